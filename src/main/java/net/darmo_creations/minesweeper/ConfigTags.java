@@ -18,10 +18,14 @@
  */
 package net.darmo_creations.minesweeper;
 
+import net.darmo_creations.gui_framework.config.tags.BooleanTag;
 import net.darmo_creations.gui_framework.config.tags.IntegerTag;
 
 public final class ConfigTags {
   public static final IntegerTag BUTTONS_SIZE = new IntegerTag("buttons_size");
+  public static final BooleanTag NO_GUESS = new BooleanTag("no_guess");
+  /** Number of timer display updates per second. */
+  public static final IntegerTag TIMER_TICK_RATE = new IntegerTag("timer_tick_rate");
 
   private ConfigTags() {}
 }
@@ -18,35 +18,85 @@
  */
 package net.darmo_creations.minesweeper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import javax.swing.ImageIcon;
 
 import net.darmo_creations.gui_framework.util.ImagesUtil;
 
 /**
- * This class holds all the images used in this application.
+ * This class holds all the images used in this application. Images are decoded in parallel in the
+ * background as soon as {@link #preload()} is called; getters only block if the requested image is
+ * not ready yet.
  * 
  * @author Damien Vergnet
  */
 public final class Images {
-  /** Digits 0 through 8. The index corresponds to the digits. */
-  public static final ImageIcon[] NUMBERS;
+  private static final String TILES_DIR = "/assets/icons/tiles/";
+  /** Index of each image in {@link #icons}, digits come first. */
+  private static final int EMPTY_CELL = 0, FLAG = 9, MARK = 10, MINE = 11, WRONG_MINE = 12;
+  private static final String[] NAMES = {"empty", "1", "2", "3", "4", "5", "6", "7", "8", "flag", "mark", "mine", "mine_wrong"};
+
+  private static List<CompletableFuture<ImageIcon>> icons;
+
+  /**
+   * Starts decoding all the images in the background. Subsequent calls do nothing.
+   */
+  public static synchronized void preload() {
+    if (icons == null) {
+      icons = new ArrayList<>(NAMES.length);
+      for (String name : NAMES) {
+        String path = TILES_DIR + name + ".png";
+        icons.add(CompletableFuture.supplyAsync(() -> ImagesUtil.getIcon(path)));
+      }
+    }
+  }
+
+  /**
+   * Returns the image for a digit; 0 gives the empty image.
+   * 
+   * @param digit a digit between 0 and 8
+   */
+  public static ImageIcon getNumber(int digit) {
+    if (digit < 0 || digit > 8)
+      throw new IllegalArgumentException("invalid digit " + digit);
+    return get(digit);
+  }
+
   /** Empty image */
-  public static final ImageIcon EMPTY_CELL = ImagesUtil.getIcon("/assets/icons/tiles/empty.png");
+  public static ImageIcon getEmptyCell() {
+    return get(EMPTY_CELL);
+  }
+
   /** Flag */
-  public static final ImageIcon FLAG = ImagesUtil.getIcon("/assets/icons/tiles/flag.png");
+  public static ImageIcon getFlag() {
+    return get(FLAG);
+  }
+
   /** Question mark */
-  public static final ImageIcon MARK = ImagesUtil.getIcon("/assets/icons/tiles/mark.png");
+  public static ImageIcon getMark() {
+    return get(MARK);
+  }
+
   /** Mine */
-  public static final ImageIcon MINE = ImagesUtil.getIcon("/assets/icons/tiles/mine.png");
+  public static ImageIcon getMine() {
+    return get(MINE);
+  }
+
   /** Crossed out mine */
-  public static final ImageIcon WRONG_MINE = ImagesUtil.getIcon("/assets/icons/tiles/mine_wrong.png");
+  public static ImageIcon getWrongMine() {
+    return get(WRONG_MINE);
+  }
 
-  static {
-    NUMBERS = new ImageIcon[9];
-    NUMBERS[0] = EMPTY_CELL;
-    for (int i = 1; i < NUMBERS.length; i++) {
-      NUMBERS[i] = ImagesUtil.getIcon("/assets/icons/tiles/" + i + ".png");
-    }
+  private static synchronized CompletableFuture<ImageIcon> getFuture(int index) {
+    preload();
+    return icons.get(index);
+  }
+
+  private static ImageIcon get(int index) {
+    return getFuture(index).join();
   }
 
   private Images() {}
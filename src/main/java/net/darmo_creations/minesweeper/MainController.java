@@ -19,15 +19,26 @@
 package net.darmo_creations.minesweeper;
 
 import java.awt.Dimension;
-import java.awt.Point;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.Collections;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import net.darmo_creations.gui_framework.config.WritableConfig;
 import net.darmo_creations.gui_framework.controllers.ApplicationController;
@@ -37,28 +48,66 @@ import net.darmo_creations.minesweeper.events.ChangeDifficultyEvent;
 import net.darmo_creations.minesweeper.events.EventType;
 import net.darmo_creations.minesweeper.events.TimerEvent;
 import net.darmo_creations.minesweeper.gui.MainFrame;
-import net.darmo_creations.minesweeper.gui.MainFrame.CellLabel;
-import net.darmo_creations.minesweeper.model.CellLabelProvider;
+import net.darmo_creations.minesweeper.gui.ReplayAnimator;
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.minesweeper.model.ChangeSet;
 import net.darmo_creations.minesweeper.model.Difficulty;
+import net.darmo_creations.minesweeper.model.EndlessGrid;
 import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.Leaderboard;
+import net.darmo_creations.minesweeper.model.Minefield;
 import net.darmo_creations.minesweeper.model.Score;
 import net.darmo_creations.minesweeper.model.Timer;
+import net.darmo_creations.minesweeper.replay.Replay;
+import net.darmo_creations.minesweeper.replay.ReplayRecorder;
+import net.darmo_creations.minesweeper.solver.NoGuessGenerator;
 import net.darmo_creations.utils.I18n;
 import net.darmo_creations.utils.events.SubscribeEvent;
 
 /**
  * Application's controller.
+ * <p>
+ * The grid is only ever accessed from the game loop, a single thread that processes the player's
+ * actions in order. Their results are published back to the event dispatch thread, which owns all
+ * the other fields.
+ * <p>
+ * Every game is recorded and its replay is saved once it is over. Replays are watched by sending
+ * their moves to the game loop like the player's clicks.
+ * <p>
+ * A game in progress on a regular board is saved when the application is closed and resumed on the
+ * next launch.
  *
  * @author Damien Vergnet
  */
-public class MainController extends ApplicationController<MainFrame> implements CellLabelProvider {
-  private Difficulty difficulty;
-  private Grid grid;
+public class MainController extends ApplicationController<MainFrame> {
+  /** Number of cells per partial change set sent during flood fills. */
+  public static final int REVEAL_BATCH_SIZE = 4096;
+
+  private BoardSize size;
+  /** Tells whether the game is played on an endless grid instead of a board of the current size. */
+  private boolean endless;
+  /** Game loop, the only thread accessing the grid. */
+  private ExecutorService gameLoop;
+  private Minefield grid;
+  /** Incremented on each reset so that results of the previous game are dropped. */
+  private int gameId;
   private boolean started;
   private boolean finished;
+  /** Number of revealed cells, the score in endless mode. */
+  private long revealedCells;
   private Timer timer;
-  private int lastTime;
-  private Map<Difficulty, List<Score>> scores;
+  /** Tells whether the timer was running when the window was minimized. */
+  private boolean timerWasRunning;
+  /** Loads the scores in the background, see {@link #getScores()}. */
+  private CompletableFuture<Map<BoardSize, Leaderboard>> scoresLoader;
+  private Map<BoardSize, Leaderboard> scores;
+  private NoGuessGenerator noGuessGenerator;
+  /** Records the current game, only accessed from the game loop; null while watching a replay. */
+  private ReplayRecorder recorder;
+  /** The replay being watched, null during a regular game. */
+  private Replay replay;
+  private ReplayAnimator animator;
 
   public MainController(MainFrame frame, WritableConfig config) {
     super(frame, config);
@@ -67,11 +116,42 @@ public class MainController extends ApplicationController<MainFrame> implements
   @Override
   public void init() {
     super.init();
-    this.scores = new TreeMap<>(ScoresDao.getInstance().load());
-    sortScores(null);
-    this.lastTime = 0;
-    setGameDifficulty(Difficulty.EASY);
-    resetGame();
+    this.scoresLoader = CompletableFuture.supplyAsync(() -> {
+      try {
+        Map<BoardSize, Leaderboard> scores = new TreeMap<>();
+        for (Map.Entry<BoardSize, List<Score>> entry : ScoresDao.getInstance().load().entrySet()) {
+          scores.put(entry.getKey(), new Leaderboard(entry.getValue()));
+        }
+        return scores;
+      }
+      catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    });
+    // The timer is paused while the window is minimized. A resumed game's timer only starts on
+    // the first click, it must not start when the window is restored.
+    this.frame.addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowIconified(WindowEvent e) {
+        MainController.this.timerWasRunning = MainController.this.timer.isRunning();
+        MainController.this.timer.pause();
+      }
+
+      @Override
+      public void windowDeiconified(WindowEvent e) {
+        if (MainController.this.timerWasRunning && MainController.this.started && !MainController.this.finished)
+          MainController.this.timer.start();
+      }
+    });
+    this.gameLoop = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "Game loop");
+      t.setDaemon(true);
+      return t;
+    });
+    if (this.config.getValue(ConfigTags.NO_GUESS))
+      this.noGuessGenerator = new NoGuessGenerator();
+    if (!resumeSavedGame())
+      setBoardSize(BoardSize.of(Difficulty.EASY));
   }
 
   @Override
@@ -80,8 +160,11 @@ public class MainController extends ApplicationController<MainFrame> implements
     super.onUserEvent(e);
 
     if (e.getType() == UserEvent.DefaultType.EXITING && !e.isCancelled()) {
-      this.timer.interrupt();
-      ScoresDao.getInstance().save(this.scores);
+      this.timer.pause();
+      saveGame();
+      this.gameLoop.shutdownNow();
+      if (this.noGuessGenerator != null)
+        this.noGuessGenerator.shutdown();
     }
     else {
       UserEvent.Type type = e.getType();
@@ -94,7 +177,20 @@ public class MainController extends ApplicationController<MainFrame> implements
             setButtonsSize();
             break;
           case SHOW_SCORES:
-            this.frame.showScoresDialog(this.scores);
+            this.frame.showScoresDialog(getScores());
+            break;
+          case TOGGLE_NO_GUESS:
+            toggleNoGuess();
+            break;
+          case CUSTOM_SIZE:
+            this.frame.showCustomSizeDialog(this.size).ifPresent(this::setBoardSize);
+            updateModeMenu();
+            break;
+          case ENDLESS_MODE:
+            setEndlessMode();
+            break;
+          case WATCH_REPLAY:
+            watchReplay();
             break;
         }
       }
@@ -102,19 +198,27 @@ public class MainController extends ApplicationController<MainFrame> implements
   }
 
   /**
-   * Sorts the scores for the given difficulty. If the parameter is null, all scores will be sorted.
-   * 
-   * @param difficultyToSort the difficulty scores to sort
+   * Returns the scores, waiting for them to be loaded if needed.
    */
-  private void sortScores(Difficulty difficultyToSort) {
-    if (difficultyToSort == null) {
-      for (List<Score> s : this.scores.values()) {
-        Collections.sort(s);
+  private Map<BoardSize, Leaderboard> getScores() {
+    if (this.scores == null) {
+      try {
+        this.scores = this.scoresLoader.join();
+      }
+      catch (CompletionException ex) {
+        showScoresError();
+        this.scores = new TreeMap<>();
+        for (Difficulty difficulty : Difficulty.values()) {
+          this.scores.put(BoardSize.of(difficulty), new Leaderboard());
+        }
       }
     }
-    else {
-      Collections.sort(this.scores.get(difficultyToSort));
-    }
+    return this.scores;
+  }
+
+  private void showScoresError() {
+    JOptionPane.showMessageDialog(this.frame, I18n.getLocalizedString("popup.scores_error.text"),
+        I18n.getLocalizedString("popup.scores_error.title"), JOptionPane.ERROR_MESSAGE);
   }
 
   private void setButtonsSize() {
@@ -122,68 +226,249 @@ public class MainController extends ApplicationController<MainFrame> implements
 
     if (opt.isPresent()) {
       this.config.setValue(ConfigTags.BUTTONS_SIZE, opt.get().getValue(ConfigTags.BUTTONS_SIZE));
+      this.frame.setButtonsSize(this.config.getValue(ConfigTags.BUTTONS_SIZE));
+    }
+  }
+
+  /**
+   * Returns the configured tick rate of the timer, clamped to the accepted range as the config
+   * file may have been edited by hand.
+   */
+  private int getTimerTickRate() {
+    return Math.max(Timer.MIN_TICK_RATE, Math.min(Timer.MAX_TICK_RATE, this.config.getValue(ConfigTags.TIMER_TICK_RATE)));
+  }
+
+  /**
+   * Enables or disables no-guess boards. The generator only runs while the option is enabled. A
+   * game in progress is kept, the option then applies to the next one.
+   */
+  private void toggleNoGuess() {
+    boolean noGuess = !this.config.getValue(ConfigTags.NO_GUESS);
+
+    this.config.setValue(ConfigTags.NO_GUESS, noGuess);
+    if (noGuess) {
+      this.noGuessGenerator = new NoGuessGenerator();
+    }
+    else {
+      this.noGuessGenerator.shutdown();
+      this.noGuessGenerator = null;
+    }
+    if (!this.started || this.finished)
       resetGame();
+  }
+
+  /**
+   * Saves the game in progress, if any, or deletes the previous saved game. The game is saved from
+   * the game loop once all the queued clicks have been played.
+   */
+  private void saveGame() {
+    boolean inProgress = this.started && !this.finished && !this.endless && this.replay == null;
+    long elapsed = this.timer.getElapsedMillis();
+
+    try {
+      this.gameLoop.submit(() -> {
+        SavedGameDao dao = SavedGameDao.getInstance();
+        if (inProgress && this.grid instanceof Grid && this.grid.areMinesGenerated() && this.grid.getResult() == 0)
+          dao.save((Grid) this.grid, elapsed, this.recorder != null ? this.recorder.toReplay() : null);
+        else
+          dao.delete();
+        return null;
+      }).get();
     }
+    catch (InterruptedException | ExecutionException ex) {
+      showSavedGameError("popup.save_game_error.text");
+    }
+  }
+
+  /**
+   * Resumes the game saved when the application was last closed, if any. The saved game is then
+   * deleted so that it can only be resumed once.
+   * 
+   * @return true if a game was resumed
+   */
+  private boolean resumeSavedGame() {
+    Optional<SavedGameDao.SavedGame> savedGame;
+
+    try {
+      savedGame = SavedGameDao.getInstance().load();
+    }
+    catch (IOException ex) {
+      savedGame = Optional.empty();
+      showSavedGameError("popup.resume_game_error.text");
+    }
+    try {
+      SavedGameDao.getInstance().delete();
+    }
+    catch (IOException ex) {
+      // The file is overwritten when the application is closed.
+    }
+    savedGame.ifPresent(this::resumeGame);
+
+    return savedGame.isPresent();
+  }
+
+  private void showSavedGameError(String messageKey) {
+    JOptionPane.showMessageDialog(this.frame, I18n.getLocalizedString(messageKey), I18n.getLocalizedString("popup.saved_game_error.title"),
+        JOptionPane.ERROR_MESSAGE);
   }
 
   @SubscribeEvent
   public void onChangeDifficulty(ChangeDifficultyEvent e) {
-    setGameDifficulty(e.getDifficulty());
+    setBoardSize(BoardSize.of(e.getDifficulty()));
   }
 
-  private void setGameDifficulty(Difficulty difficulty) {
+  private void setBoardSize(BoardSize size) {
     if (!this.started || this.finished) {
-      this.difficulty = difficulty;
-      this.frame.setTitle(this.frame.getBaseTitle() + " - " + difficulty.getName());
+      this.size = size;
+      this.endless = false;
+      updateTitle();
       resetGame();
     }
   }
 
-  @SubscribeEvent
-  public void onCellClicked(CellClickedEvent e) {
-    if (!this.started) {
-      startGame(e.getCell().getCoordinates());
+  private void setEndlessMode() {
+    if (!this.started || this.finished) {
+      this.endless = true;
+      updateTitle();
+      resetGame();
     }
+  }
 
-    if (!this.finished) {
-      if (e.isMainClick()) {
-        clickCell(e);
-      }
-      else {
-        this.grid.performSecondaryClick(e);
-        this.frame.setRemainingMines(this.grid.getRemainingFlags());
-      }
+  /**
+   * Asks the user for a replay and its speed then plays it.
+   */
+  private void watchReplay() {
+    if (this.started && !this.finished)
+      return;
+
+    Optional<Path> file = this.frame.showOpenReplayDialog(ReplaysDao.getInstance().getDirectory());
+    if (!file.isPresent())
+      return;
+    Replay replay;
+    try {
+      replay = ReplaysDao.getInstance().load(file.get());
+    }
+    catch (IOException ex) {
+      showReplayError("popup.replay_read_error.text");
+      return;
     }
+    Optional<Double> speed = this.frame.showReplaySpeedDialog();
+    if (!speed.isPresent())
+      return;
+
+    this.endless = replay.isEndless();
+    replay.getSize().ifPresent(size -> this.size = size);
+    updateTitle();
+    resetGame(replay);
+    this.frame.lockGrid();
+
+    int gameId = this.gameId;
+    this.animator = new ReplayAnimator(replay, speed.get(), i -> {
+      int row = replay.getRow(i), col = replay.getColumn(i);
+      Action action = replay.getAction(i);
+      long time = replay.getTime(i);
+      this.gameLoop.execute(() -> play(gameId, row, col, action, time));
+    }, this::setTimer);
+    this.animator.start();
   }
 
-  private void clickCell(CellClickedEvent event) {
-    int result = this.grid.performMainClick(event);
-    if (result == Grid.WIN) {
-      endGame(true);
-    }
-    else if (result == Grid.LOST) {
-      endGame(false);
+  private void showReplayError(String messageKey) {
+    JOptionPane.showMessageDialog(this.frame, I18n.getLocalizedString(messageKey), I18n.getLocalizedString("popup.replay_error.title"),
+        JOptionPane.ERROR_MESSAGE);
+  }
+
+  /**
+   * Shows the current board size or endless mode in the frame's title.
+   */
+  private void updateTitle() {
+    String mode = this.endless ? I18n.getLocalizedString("difficulty.endless") : this.size.getName();
+    this.frame.setTitle(this.frame.getBaseTitle() + " - " + mode);
+  }
+
+  /**
+   * Selects the menu item of the current board size or endless mode.
+   */
+  private void updateModeMenu() {
+    if (this.endless)
+      this.frame.selectEndless();
+    else
+      this.frame.selectBoardSize(this.size);
+  }
+
+  @SubscribeEvent
+  public void onCellClicked(CellClickedEvent e) {
+    if (this.finished || this.replay != null)
+      return;
+    if (!this.started) {
+      this.started = true;
+      this.frame.updateMenus(true);
     }
+    // The timer of a resumed game starts again on the first click.
+    if (!this.timer.isRunning())
+      this.timer.start();
+
+    int gameId = this.gameId;
+    int row = e.getRow(), col = e.getColumn();
+    Action action = e.isMainClick() ? Action.MAIN_CLICK : Action.SECONDARY_CLICK;
+    // Time of the click, used as the final time if this action ends the game.
+    long time = this.timer.getElapsedMillis();
+
+    this.gameLoop.execute(() -> play(gameId, row, col, action, time));
   }
 
   @SubscribeEvent
   public void onTimerEvent(TimerEvent e) {
-    this.lastTime = e.getHours() * 3600 + e.getMinutes() * 60 + e.getSeconds();
-    this.frame.setTimer(e.getHours(), e.getMinutes(), e.getSeconds());
+    // Timer events are fired from the timer's thread.
+    SwingUtilities.invokeLater(() -> {
+      if (e.getTimer() == this.timer)
+        this.frame.setTimer(e.getHours(), e.getMinutes(), e.getSeconds());
+    });
   }
 
   private void resetGame() {
-    if (this.timer != null && this.timer.isAlive())
-      this.timer.interrupt();
+    resetGame(null);
+  }
 
-    this.timer = new Timer();
+  /**
+   * Starts a new game.
+   * 
+   * @param replay the replay the game is played back from, null for a regular game
+   */
+  private void resetGame(Replay replay) {
+    if (this.timer != null)
+      this.timer.pause();
+    if (this.animator != null) {
+      this.animator.stop();
+      this.animator = null;
+    }
+    this.replay = replay;
+
+    this.timer = new Timer(getTimerTickRate());
 
     this.started = this.finished = false;
-    this.grid = new Grid(this.difficulty, this);
+    this.revealedCells = 0;
+    this.gameId++;
+    int gameId = this.gameId;
 
-    this.frame.resetGrid(new Dimension(this.difficulty.getColumns(), this.difficulty.getRows()),
-        this.config.getValue(ConfigTags.BUTTONS_SIZE));
-    this.frame.setRemainingMines(this.grid.getRemainingFlags());
+    if (this.endless) {
+      this.gameLoop.execute(() -> {
+        this.grid = replay != null ? replay.createGrid() : new EndlessGrid(EndlessGrid.DEFAULT_DENSITY);
+        this.recorder = replay != null ? null : new ReplayRecorder(EndlessGrid.DEFAULT_DENSITY);
+      });
+      this.frame.resetEndlessGrid(this.config.getValue(ConfigTags.BUTTONS_SIZE));
+      this.frame.setRevealedCells(0);
+    }
+    else {
+      // Falls back to a regular board if no no-guess board is ready yet.
+      Optional<NoGuessGenerator.Board> board = this.noGuessGenerator != null && replay == null ? this.noGuessGenerator.take(this.size)
+          : Optional.empty();
+      BoardSize size = this.size;
+
+      this.gameLoop.execute(() -> newGrid(gameId, size, board, replay));
+      this.frame.resetGrid(new Dimension(this.size.getColumns(), this.size.getRows()), this.config.getValue(ConfigTags.BUTTONS_SIZE));
+      this.frame.setRemainingMines(this.size.getMines());
+    }
+    updateModeMenu();
     this.frame.setTimer(0, 0, 0);
     this.frame.updateMenus(false);
     this.frame.pack();
@@ -191,47 +476,172 @@ public class MainController extends ApplicationController<MainFrame> implements
   }
 
   /**
-   * Starts a new game.
+   * Resumes a saved game. Its timer starts again on the first click.
    * 
-   * @param clickedCell the clicked cell
+   * @param savedGame the saved game
    */
-  private void startGame(Point clickedCell) {
+  private void resumeGame(SavedGameDao.SavedGame savedGame) {
+    Grid grid = savedGame.getGrid();
+    ReplayRecorder recorder = savedGame.getReplay().map(ReplayRecorder::new).orElse(null);
+
+    if (this.timer != null)
+      this.timer.pause();
+    this.size = savedGame.getSize();
+    this.endless = false;
+    this.replay = null;
+    this.timer = new Timer(getTimerTickRate(), savedGame.getElapsedMillis());
     this.started = true;
+    this.finished = false;
+    this.gameId++;
+
+    this.gameLoop.execute(() -> {
+      this.grid = grid;
+      this.recorder = recorder;
+    });
+    updateTitle();
+    this.frame.resetGrid(new Dimension(this.size.getColumns(), this.size.getRows()), this.config.getValue(ConfigTags.BUTTONS_SIZE));
+    this.frame.setTiles(grid.getTiles());
+    this.frame.setRemainingMines(grid.getRemainingFlags());
+    updateModeMenu();
+    setTimer(savedGame.getElapsedMillis());
     this.frame.updateMenus(true);
-    this.grid.generateMines(clickedCell.y, clickedCell.x);
-    this.timer.start();
+    this.frame.pack();
+    this.frame.repaint();
+  }
+
+  /**
+   * Creates the grid for a new game. Called from the game loop.
+   * 
+   * @param gameId the game's ID
+   * @param size the board size
+   * @param board the no-guess board to use, if any
+   * @param replay the replay the game is played back from, if any
+   */
+  private void newGrid(int gameId, BoardSize size, Optional<NoGuessGenerator.Board> board, Replay replay) {
+    if (replay != null) {
+      this.grid = replay.createGrid();
+      this.recorder = null;
+    }
+    else if (board.isPresent()) {
+      int row = board.get().getStartRow(), col = board.get().getStartColumn();
+      this.grid = board.get().createGrid();
+      this.recorder = new ReplayRecorder(size);
+      this.recorder.setMines(board.get().getSeed(), true);
+      this.recorder.add(0, row, col, Action.MAIN_CLICK);
+      ChangeSet changes = this.grid.play(row, col, Action.MAIN_CLICK);
+      SwingUtilities.invokeLater(() -> applyChanges(gameId, changes, null, 0));
+    }
+    else {
+      this.grid = new Grid(size);
+      this.recorder = new ReplayRecorder(size);
+    }
+  }
+
+  /**
+   * Plays an action. Called from the game loop.
+   * 
+   * @param gameId the game's ID
+   * @param row the clicked cell's row
+   * @param col the clicked cell's column
+   * @param action the action
+   * @param time the time of the action in milliseconds
+   */
+  private void play(int gameId, int row, int col, Action action, long time) {
+    // Clicks queued before the end of the game are dropped.
+    if (this.grid.getResult() != 0)
+      return;
+    if (!this.grid.areMinesGenerated()) {
+      this.grid.generateMines(row, col, ThreadLocalRandom.current().nextLong(), false);
+      if (this.recorder != null)
+        this.recorder.setMines(this.grid.getSeed(), false);
+    }
+    if (this.recorder != null)
+      this.recorder.add(time, row, col, action);
+
+    // Big flood fills are streamed to the frame while they are computed.
+    ChangeSet changes = this.grid.play(row, col, action, partial -> SwingUtilities.invokeLater(() -> applyChanges(gameId, partial, null, time)),
+        REVEAL_BATCH_SIZE);
+    ChangeSet endChanges = changes.getResult() != 0 ? this.grid.endGame() : null;
+
+    if (endChanges != null && this.recorder != null) {
+      try {
+        ReplaysDao.getInstance().save(this.recorder.toReplay());
+      }
+      catch (IOException ex) {
+        SwingUtilities.invokeLater(() -> showReplayError("popup.replay_save_error.text"));
+      }
+      this.recorder = null;
+    }
+
+    SwingUtilities.invokeLater(() -> applyChanges(gameId, changes, endChanges, time));
+  }
+
+  /**
+   * Shows the result of an action. Results from previous games are ignored.
+   * 
+   * @param gameId ID of the game the changes belong to
+   * @param changes the changes
+   * @param endChanges the changes revealing the whole grid if the game is over, null otherwise
+   * @param time the time of the action in milliseconds
+   */
+  private void applyChanges(int gameId, ChangeSet changes, ChangeSet endChanges, long time) {
+    if (gameId != this.gameId || this.finished)
+      return;
+
+    this.frame.applyChanges(changes);
+    this.revealedCells = changes.getRevealedCells();
+    if (this.endless)
+      this.frame.setRevealedCells(this.revealedCells);
+    else
+      this.frame.setRemainingMines(changes.getRemainingFlags());
+    if (endChanges != null) {
+      this.frame.applyChanges(endChanges);
+      endGame(changes.getResult() == Grid.WIN, time);
+    }
   }
 
   /**
    * Ends the game. Disables all the cells.
    * 
    * @param victory tells if the player has won or not
+   * @param time the final time in milliseconds
    */
-  private void endGame(boolean victory) {
+  private void endGame(boolean victory, long time) {
     String title = victory ? I18n.getLocalizedString("popup.victory.title") : I18n.getLocalizedString("popup.game_over.title");
     String msg = (victory ? I18n.getLocalizedString("popup.victory.text") : I18n.getLocalizedString("popup.game_over.text"));
 
     this.finished = true;
-    this.timer.interrupt();
+    this.timer.pause();
+    if (this.animator != null)
+      this.animator.stop();
+    setTimer(time);
 
-    this.grid.endGame();
+    this.frame.lockGrid();
     this.frame.updateMenus(false);
     int choice = 0;
 
-    if (victory) {
+    // Watching a replay does not add any score.
+    if (victory && this.replay == null) {
       msg += "\n" + I18n.getLocalizedString("popup.enter_name.text");
       String name = JOptionPane.showInputDialog(this.frame, msg, title, JOptionPane.QUESTION_MESSAGE);
 
       if (name != null) {
-        Score score = new Score(name, Duration.ofSeconds(this.lastTime));
+        Score score = new Score(name, Duration.ofMillis(time), Instant.now());
 
-        this.scores.get(this.difficulty).add(score);
-        sortScores(this.difficulty);
+        getScores().computeIfAbsent(this.size, size -> new Leaderboard()).add(score);
+        try {
+          ScoresDao.getInstance().add(this.size, score);
+        }
+        catch (IOException ex) {
+          showScoresError();
+        }
       }
       choice = JOptionPane.showConfirmDialog(this.frame, I18n.getLocalizedString("popup.play_again.text"), title, JOptionPane.YES_NO_OPTION,
           JOptionPane.QUESTION_MESSAGE);
     }
     else {
+      if (this.endless)
+        msg += "\n" + String.format(I18n.getLocalizedString("popup.endless_score.text"), this.revealedCells);
       choice = JOptionPane.showConfirmDialog(this.frame, msg + "\n" + I18n.getLocalizedString("popup.play_again.text"), title,
           JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
     }
@@ -240,8 +650,12 @@ public class MainController extends ApplicationController<MainFrame> implements
       resetGame();
   }
 
-  @Override
-  public CellLabel getLabel(int row, int col) {
-    return this.frame.getCell(new Point(col, row));
-  };
+  /**
+   * Shows the given time in the frame.
+   * 
+   * @param time the time in milliseconds
+   */
+  private void setTimer(long time) {
+    this.frame.setTimer((int) (time / 3_600_000), (int) (time / 60_000 % 60), (int) (time / 1000 % 60));
+  }
 }
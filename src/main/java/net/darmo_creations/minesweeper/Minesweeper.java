@@ -19,6 +19,7 @@
 package net.darmo_creations.minesweeper;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Optional;
 
@@ -26,6 +27,9 @@ import net.darmo_creations.gui_framework.Application;
 import net.darmo_creations.gui_framework.config.Language;
 import net.darmo_creations.gui_framework.config.WritableConfig;
 import net.darmo_creations.minesweeper.gui.MainFrame;
+import net.darmo_creations.minesweeper.replay.ReplayPlayer;
+import net.darmo_creations.minesweeper.simulation.BatchRunner;
+import net.darmo_creations.minesweeper.simulation.Benchmark;
 import net.darmo_creations.utils.version.Version;
 
 public class Minesweeper extends Application {
@@ -37,6 +41,8 @@ public class Minesweeper extends Application {
         new Language("Français", Locale.FRANCE), //
         new Language("Esperanto", new Locale("eo")));
     WritableConfig.registerTag(ConfigTags.BUTTONS_SIZE, 15);
+    WritableConfig.registerTag(ConfigTags.NO_GUESS, false);
+    WritableConfig.registerTag(ConfigTags.TIMER_TICK_RATE, 10);
   }
 
   @Override
@@ -85,6 +91,20 @@ public class Minesweeper extends Application {
   }
 
   public static void main(String[] args) {
-    launch(args);
+    if (args.length > 0 && "--simulate".equals(args[0])) {
+      BatchRunner.main(args);
+    }
+    else if (args.length > 0 && "--benchmark".equals(args[0])) {
+      Benchmark.main(args);
+    }
+    else if (args.length > 0 && "--replay".equals(args[0])) {
+      ReplayPlayer.main(args);
+    }
+    else {
+      if (Arrays.asList(args).contains("--startup-time"))
+        StartupTimer.start();
+      Images.preload();
+      launch(args);
+    }
   }
 }
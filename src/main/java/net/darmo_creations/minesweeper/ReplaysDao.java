@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import net.darmo_creations.minesweeper.replay.Replay;
+import net.darmo_creations.utils.JarUtil;
+
+/**
+ * This class handles I/O operations for the replays. The replay of each finished game is stored in
+ * its own file in the replays directory, next to the scores, and named after the time the game
+ * ended.
+ *
+ * @author Damien Vergnet
+ */
+public class ReplaysDao {
+  private static final String DIRECTORY = "replays";
+  private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS");
+
+  private static ReplaysDao instance;
+
+  /**
+   * Returns the global instance.
+   */
+  public static synchronized ReplaysDao getInstance() {
+    if (instance == null)
+      instance = new ReplaysDao();
+    return instance;
+  }
+
+  private final Path directory;
+
+  private ReplaysDao() {
+    try {
+      this.directory = Paths.get(URLDecoder.decode(JarUtil.getJarDir() + DIRECTORY, "UTF-8"));
+    }
+    catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported.
+      throw new AssertionError(ex);
+    }
+  }
+
+  /**
+   * Returns the directory the replays are saved in. It may not exist yet.
+   */
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * Saves a replay in a new file.
+   * 
+   * @param replay the replay
+   * @return the file
+   * @throws IOException if the file could not be written
+   */
+  public synchronized Path save(Replay replay) throws IOException {
+    Files.createDirectories(this.directory);
+    Path file = this.directory.resolve(LocalDateTime.now().format(FILE_NAME_FORMAT) + "." + Replay.EXTENSION);
+    replay.write(file);
+    return file;
+  }
+
+  /**
+   * Loads a replay.
+   * 
+   * @param file the replay's file
+   * @return the replay
+   * @throws IOException if the file could not be read or is not a valid replay
+   */
+  public Replay load(Path file) throws IOException {
+    return Replay.read(file);
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.replay.Replay;
+import net.darmo_creations.utils.JarUtil;
+
+/**
+ * This class handles I/O operations for the game saved when the application is closed. There is
+ * at most one saved game, stored next to the scores.
+ * <p>
+ * The file starts with a fixed-size header followed by the replay of the game so far and the
+ * state of the cells:
+ * 
+ * <pre>
+ * "MSSG" version:int rows:int columns:int mines:int seed:long elapsed:long replayLength:int
+ * replay:replayLength bytes
+ * cells:rows * columns bytes
+ * </pre>
+ * 
+ * Cells are stored in the grid's own form, the mine/clicked/flagged/marked bits and the number of
+ * nearby mines packed in one byte each, so that they are written and read back in bulk without any
+ * conversion. The file is written to a temporary file first then atomically swapped with the
+ * previous one.
+ *
+ * @author Damien Vergnet
+ */
+public class SavedGameDao {
+  private static final String FILE = "game.save";
+  private static final int MAGIC = 'M' << 24 | 'S' << 16 | 'S' << 8 | 'G';
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 40;
+
+  private static SavedGameDao instance;
+
+  /**
+   * Returns the global instance.
+   */
+  public static synchronized SavedGameDao getInstance() {
+    if (instance == null)
+      instance = new SavedGameDao();
+    return instance;
+  }
+
+  private final Path file;
+
+  private SavedGameDao() {
+    try {
+      this.file = Paths.get(URLDecoder.decode(JarUtil.getJarDir() + FILE, "UTF-8"));
+    }
+    catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported.
+      throw new AssertionError(ex);
+    }
+  }
+
+  /**
+   * Saves a game in progress, replacing the previous saved game.
+   * 
+   * @param grid the grid, its mines must have been generated
+   * @param elapsedMillis the time elapsed since the start of the game in milliseconds
+   * @param replay the replay of the game so far, may be null
+   * @throws IOException if the game could not be saved
+   */
+  public synchronized void save(Grid grid, long elapsedMillis, Replay replay) throws IOException {
+    byte[] replayBytes = replay != null ? replay.encode() : new byte[0];
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+    header.putInt(MAGIC).putInt(VERSION);
+    header.putInt(grid.getRows()).putInt(grid.getColumns()).putInt(grid.getMinesNumber());
+    header.putLong(grid.getSeed()).putLong(elapsedMillis);
+    header.putInt(replayBytes.length);
+    header.flip();
+
+    Path tmp = this.file.resolveSibling(FILE + ".tmp");
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer replayBuffer = ByteBuffer.wrap(replayBytes);
+      while (header.hasRemaining() || replayBuffer.hasRemaining())
+        channel.write(new ByteBuffer[]{header, replayBuffer});
+      grid.writeCells(channel);
+      // The data must be on disk before the rename, or a crash could leave an empty save.
+      channel.force(true);
+    }
+    Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Loads the saved game.
+   * 
+   * @return the saved game or an empty optional if there is none
+   * @throws IOException if the file could not be read or is not a valid saved game
+   */
+  public synchronized Optional<SavedGame> load() throws IOException {
+    if (!Files.exists(this.file))
+      return Optional.empty();
+
+    try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining()) {
+        if (channel.read(header) < 0)
+          throw new IOException("truncated header");
+      }
+      header.flip();
+      if (header.getInt() != MAGIC)
+        throw new IOException("not a saved game");
+      int version = header.getInt();
+      if (version != VERSION)
+        throw new IOException("unsupported version " + version);
+
+      BoardSize size;
+      try {
+        size = new BoardSize(header.getInt(), header.getInt(), header.getInt());
+      }
+      catch (IllegalArgumentException ex) {
+        throw new IOException("invalid board size", ex);
+      }
+      long seed = header.getLong();
+      long elapsed = header.getLong();
+      int replayLength = header.getInt();
+      if (elapsed < 0 || replayLength < 0 || HEADER_SIZE + (long) replayLength + size.getCells() != channel.size())
+        throw new IOException("invalid file size");
+
+      ByteBuffer replayBuffer = ByteBuffer.allocate(replayLength);
+      while (replayBuffer.hasRemaining()) {
+        if (channel.read(replayBuffer) < 0)
+          throw new IOException("truncated replay");
+      }
+      Replay replay = replayLength > 0 ? Replay.decode(replayBuffer.array()) : null;
+      Grid grid = Grid.readCells(size.getRows(), size.getColumns(), size.getMines(), seed, channel);
+
+      return Optional.of(new SavedGame(size, grid, elapsed, replay));
+    }
+  }
+
+  /**
+   * Deletes the saved game, if any.
+   * 
+   * @throws IOException if the file could not be deleted
+   */
+  public synchronized void delete() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  /**
+   * A game restored from a file.
+   */
+  public static final class SavedGame {
+    private final BoardSize size;
+    private final Grid grid;
+    private final long elapsedMillis;
+    private final Replay replay;
+
+    private SavedGame(BoardSize size, Grid grid, long elapsedMillis, Replay replay) {
+      this.size = size;
+      this.grid = grid;
+      this.elapsedMillis = elapsedMillis;
+      this.replay = replay;
+    }
+
+    public BoardSize getSize() {
+      return this.size;
+    }
+
+    public Grid getGrid() {
+      return this.grid;
+    }
+
+    /**
+     * Returns the time elapsed since the start of the game in milliseconds.
+     */
+    public long getElapsedMillis() {
+      return this.elapsedMillis;
+    }
+
+    /**
+     * Returns the replay of the game so far.
+     */
+    public Optional<Replay> getReplay() {
+      return Optional.ofNullable(this.replay);
+    }
+  }
+}
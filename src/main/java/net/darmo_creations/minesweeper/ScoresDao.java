@@ -18,40 +18,63 @@
  */
 package net.darmo_creations.minesweeper;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import net.darmo_creations.minesweeper.model.BoardSize;
 import net.darmo_creations.minesweeper.model.Difficulty;
 import net.darmo_creations.minesweeper.model.Score;
 import net.darmo_creations.utils.JarUtil;
 
 /**
  * This DAO handles scores loading/writing.
+ * <p>
+ * Scores are stored in an append-only journal, one record per line. Each new score is appended
+ * and synced to the disk right away, so saving a score does not depend on the number of scores
+ * already stored and a crash never loses more than the score being written. Every record starts
+ * with the CRC-32 of its content: damaged records and torn writes at the end of the file are
+ * dropped on load and the journal is then compacted, i.e. rewritten with only the valid records
+ * and atomically swapped with the old one.
+ * <p>
+ * Records identify their board by its {@link BoardSize#getKey() key}, which is the difficulty's
+ * name for presets.
+ * <p>
+ * If there is no journal yet, scores are imported from the XML file used by older versions.
  *
  * @author Damien Vergnet
  */
 public class ScoresDao {
+  private static final String JOURNAL_FILE = "scores.journal";
+  private static final String LEGACY_FILE = "scores.xml";
+  private static final String HEADER = "# Minesweeper scores v1\n";
+  private static final char SEPARATOR = '\t';
+
   private static ScoresDao instance;
 
   /**
@@ -63,19 +86,175 @@ public class ScoresDao {
     return instance;
   }
 
+  private final Path journal;
+  private final Path legacyFile;
+
+  private ScoresDao() {
+    this.journal = getPath(JOURNAL_FILE);
+    this.legacyFile = getPath(LEGACY_FILE);
+  }
+
   /**
-   * Loads the scores.
+   * Loads the scores. Damaged records are dropped and the journal is compacted.
    * 
    * @return the scores
+   * @throws IOException if the journal could not be read or repaired
    */
-  public Map<Difficulty, List<Score>> load() {
-    Map<Difficulty, List<Score>> scores = new HashMap<>();
+  public synchronized Map<BoardSize, List<Score>> load() throws IOException {
+    Map<BoardSize, List<Score>> scores = new HashMap<>();
+
+    for (Difficulty difficulty : Difficulty.values()) {
+      scores.put(BoardSize.of(difficulty), new ArrayList<>());
+    }
 
+    if (Files.exists(this.journal)) {
+      if (!readJournal(scores))
+        compact(scores);
+    }
+    else if (Files.exists(this.legacyFile)) {
+      readLegacyFile(scores);
+      compact(scores);
+    }
+
+    return scores;
+  }
+
+  /**
+   * Appends a score to the journal and syncs it to the disk.
+   * 
+   * @param size the size of the board the score was achieved on
+   * @param score the score
+   * @throws IOException if the score could not be written
+   */
+  public synchronized void add(BoardSize size, Score score) throws IOException {
+    try (FileChannel channel = FileChannel.open(this.journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND)) {
+      StringBuilder sb = new StringBuilder();
+
+      if (channel.size() == 0)
+        sb.append(HEADER);
+      appendRecord(sb, size, score);
+      ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Rewrites the journal with the given scores. The new journal is written to a temporary file
+   * then moved over the old one so that it is never left half-written.
+   * 
+   * @param scores the scores
+   * @throws IOException if the journal could not be written
+   */
+  public synchronized void compact(Map<BoardSize, List<Score>> scores) throws IOException {
+    Path tmp = this.journal.resolveSibling(JOURNAL_FILE + ".tmp");
+    StringBuilder sb = new StringBuilder(HEADER);
+
+    for (Map.Entry<BoardSize, List<Score>> entry : scores.entrySet()) {
+      for (Score score : entry.getValue()) {
+        appendRecord(sb, entry.getKey(), score);
+      }
+    }
+
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+      channel.force(false);
+    }
+    Files.move(tmp, this.journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads all the valid records of the journal. A torn record at the end of the file is cut off so
+   * that the next one is appended on a new line.
+   * 
+   * @param scores the map to add the scores to
+   * @return false if some records were damaged
+   */
+  private boolean readJournal(Map<BoardSize, List<Score>> scores) throws IOException {
+    byte[] bytes = Files.readAllBytes(this.journal);
+    boolean valid = true;
+    int start = 0;
+
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] == '\n') {
+        String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+        if (!line.startsWith("#") && !line.isEmpty())
+          valid &= readRecord(line, scores);
+        start = i + 1;
+      }
+    }
+
+    if (start < bytes.length) {
+      try (FileChannel channel = FileChannel.open(this.journal, StandardOpenOption.WRITE)) {
+        channel.truncate(start);
+        channel.force(false);
+      }
+    }
+
+    return valid;
+  }
+
+  /**
+   * Parses a record.
+   * 
+   * @param line the record
+   * @param scores the map to add the score to
+   * @return false if the record is damaged
+   */
+  private boolean readRecord(String line, Map<BoardSize, List<Score>> scores) {
+    String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+
+    if (fields.length != 5 || !fields[0].equals(checksum(line.substring(fields[0].length() + 1))))
+      return false;
+    try {
+      BoardSize size = BoardSize.parse(fields[1]);
+      Duration duration = Duration.ofMillis(Long.parseLong(fields[2]));
+      Instant date = Instant.ofEpochMilli(Long.parseLong(fields[3]));
+      String username = URLDecoder.decode(fields[4], "UTF-8");
+
+      scores.computeIfAbsent(size, k -> new ArrayList<>()).add(new Score(username, duration, date));
+      return true;
+    }
+    catch (IllegalArgumentException | UnsupportedEncodingException ex) {
+      return false;
+    }
+  }
+
+  private static void appendRecord(StringBuilder sb, BoardSize size, Score score) {
+    String content;
+    try {
+      content = size.getKey() + SEPARATOR + score.getDuration().toMillis() + SEPARATOR + score.getDate().toEpochMilli()
+          + SEPARATOR + URLEncoder.encode(score.getUsername(), "UTF-8");
+    }
+    catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported.
+      throw new AssertionError(ex);
+    }
+    sb.append(checksum(content)).append(SEPARATOR).append(content).append('\n');
+  }
+
+  private static String checksum(String content) {
+    CRC32 crc = new CRC32();
+    crc.update(content.getBytes(StandardCharsets.UTF_8));
+    return String.format("%08x", crc.getValue());
+  }
+
+  /**
+   * Reads the scores from the XML file used by older versions. Times are in seconds unless the
+   * millis attribute is present.
+   * 
+   * @param scores the map to add the scores to
+   */
+  private void readLegacyFile(Map<BoardSize, List<Score>> scores) throws IOException {
     try {
-      File fXmlFile = new File(URLDecoder.decode(JarUtil.getJarDir() + "scores.xml", "UTF-8"));
       DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
       DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-      Document doc = dBuilder.parse(fXmlFile);
+      Document doc = dBuilder.parse(this.legacyFile.toFile());
 
       doc.getDocumentElement().normalize();
 
@@ -87,66 +266,34 @@ public class ScoresDao {
           Element difficultyElement = ((Element) difficultiesList.item(i));
           NodeList timesList = difficultyElement.getElementsByTagName("Score");
           Difficulty difficulty = Difficulty.valueOf(difficultyElement.getAttribute("name").toUpperCase());
-          List<Score> scoresList = new ArrayList<>();
 
           for (int j = 0; j < timesList.getLength(); j++) {
             Element timeElement = (Element) timesList.item(j);
             try {
-              Duration duration = Duration.ofSeconds(Long.parseLong(timeElement.getTextContent()));
-              Score score = new Score(timeElement.getAttribute("username"), duration);
-              scoresList.add(score);
+              String millis = timeElement.getAttribute("millis");
+              String date = timeElement.getAttribute("date");
+              Duration duration = millis.isEmpty() ? Duration.ofSeconds(Long.parseLong(timeElement.getTextContent()))
+                  : Duration.ofMillis(Long.parseLong(millis));
+              Instant instant = date.isEmpty() ? Instant.EPOCH : Instant.ofEpochMilli(Long.parseLong(date));
+              scores.get(BoardSize.of(difficulty)).add(new Score(timeElement.getAttribute("username"), duration, instant));
             }
             catch (NumberFormatException ex) {}
           }
-          scores.put(difficulty, scoresList);
-        }
-        for (Difficulty diff : Difficulty.values()) {
-          if (!scores.containsKey(diff)) {
-            scores.put(diff, new ArrayList<>());
-          }
         }
       }
     }
-    catch (NullPointerException | ClassCastException | ParserConfigurationException | SAXException | IOException ex) {}
-
-    return scores;
+    catch (ParserConfigurationException | SAXException | IllegalArgumentException ex) {
+      throw new IOException("could not read " + this.legacyFile, ex);
+    }
   }
 
-  /**
-   * Writes the scores to the disk.
-   * 
-   * @param scores the scores
-   */
-  public void save(Map<Difficulty, List<Score>> scores) {
+  private static Path getPath(String fileName) {
     try {
-      DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-      DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-      Document doc = docBuilder.newDocument();
-
-      Element root = doc.createElement("Scores");
-
-      for (Map.Entry<Difficulty, List<Score>> entry : scores.entrySet()) {
-        Element difficultyElement = doc.createElement("Difficulty");
-        difficultyElement.setAttribute("name", entry.getKey().name().toLowerCase());
-        for (Score score : entry.getValue()) {
-          Element scoreElement = doc.createElement("Score");
-
-          scoreElement.setAttribute("username", score.getUsername());
-          scoreElement.setTextContent("" + score.getDuration().getSeconds());
-          difficultyElement.appendChild(scoreElement);
-        }
-        root.appendChild(difficultyElement);
-      }
-
-      doc.appendChild(root);
-
-      Transformer transformer = TransformerFactory.newInstance().newTransformer();
-      StreamResult result = new StreamResult(new File(URLDecoder.decode(JarUtil.getJarDir() + "scores.xml", "UTF-8")));
-
-      transformer.transform(new DOMSource(doc), result);
+      return Paths.get(URLDecoder.decode(JarUtil.getJarDir() + fileName, "UTF-8"));
+    }
+    catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported.
+      throw new AssertionError(ex);
     }
-    catch (ParserConfigurationException | TransformerException | UnsupportedEncodingException ex) {}
   }
-
-  private ScoresDao() {}
 }
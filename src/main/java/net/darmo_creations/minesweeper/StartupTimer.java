@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures the time needed to show the main frame. When enabled with the {@code --startup-time}
+ * option, the time between the call to {@code main} and the first paint of the frame is printed,
+ * then the application exits.
+ *
+ * @author Damien Vergnet
+ */
+public final class StartupTimer {
+  private static long startTime;
+  private static boolean enabled;
+  private static boolean reported;
+
+  /**
+   * Enables the measurement. Should be called as early as possible.
+   */
+  public static void start() {
+    startTime = System.nanoTime();
+    enabled = true;
+  }
+
+  /**
+   * Reports the startup time, only the first time it is called. Must be called from the EDT once
+   * the main frame has been painted.
+   */
+  public static void firstPaint() {
+    if (enabled && !reported) {
+      reported = true;
+      long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+      long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+
+      System.out.println("First paint after " + time + " ms (" + uptime + " ms since JVM start)");
+      SwingUtilities.invokeLater(() -> System.exit(0));
+    }
+  }
+
+  private StartupTimer() {}
+}
@@ -18,7 +18,6 @@
  */
 package net.darmo_creations.minesweeper.events;
 
-import net.darmo_creations.minesweeper.gui.MainFrame.CellLabel;
 import net.darmo_creations.utils.events.AbstractEvent;
 
 /**
@@ -27,17 +26,22 @@ import net.darmo_creations.utils.events.AbstractEvent;
  * @author Damien Vergnet
  */
 public class CellClickedEvent extends AbstractEvent {
-  private final CellLabel cell;
+  private final int row, column;
   private final boolean isMainClick;
 
-  public CellClickedEvent(CellLabel cell, boolean isMainClick) {
+  public CellClickedEvent(int row, int column, boolean isMainClick) {
     super(false);
-    this.cell = cell;
+    this.row = row;
+    this.column = column;
     this.isMainClick = isMainClick;
   }
 
-  public CellLabel getCell() {
-    return this.cell;
+  public int getRow() {
+    return this.row;
+  }
+
+  public int getColumn() {
+    return this.column;
   }
 
   public boolean isMainClick() {
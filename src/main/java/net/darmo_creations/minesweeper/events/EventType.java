@@ -28,5 +28,9 @@ import net.darmo_creations.gui_framework.events.UserEvent;
 public enum EventType implements UserEvent.Type {
   NEW_GAME,
   SHOW_BUTTONS_SIZE,
-  SHOW_SCORES;
+  SHOW_SCORES,
+  TOGGLE_NO_GUESS,
+  CUSTOM_SIZE,
+  ENDLESS_MODE,
+  WATCH_REPLAY;
 }
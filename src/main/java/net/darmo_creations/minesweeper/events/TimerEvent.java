@@ -18,6 +18,7 @@
  */
 package net.darmo_creations.minesweeper.events;
 
+import net.darmo_creations.minesweeper.model.Timer;
 import net.darmo_creations.utils.events.AbstractEvent;
 
 /**
@@ -26,24 +27,38 @@ import net.darmo_creations.utils.events.AbstractEvent;
  * @author Damien Vergnet
  */
 public class TimerEvent extends AbstractEvent {
-  private final int hours, minutes, seconds;
+  private final Timer timer;
+  private final long millis;
 
-  public TimerEvent(int hours, int minutes, int seconds) {
+  public TimerEvent(Timer timer, long millis) {
     super(false);
-    this.hours = hours;
-    this.minutes = minutes;
-    this.seconds = seconds;
+    this.timer = timer;
+    this.millis = millis;
+  }
+
+  /**
+   * Returns the timer that fired this event.
+   */
+  public Timer getTimer() {
+    return this.timer;
+  }
+
+  /**
+   * Returns the elapsed time in milliseconds.
+   */
+  public long getMillis() {
+    return this.millis;
   }
 
   public int getHours() {
-    return this.hours;
+    return (int) (this.millis / 3_600_000);
   }
 
   public int getMinutes() {
-    return this.minutes;
+    return (int) (this.millis / 60_000 % 60);
   }
 
   public int getSeconds() {
-    return this.seconds;
+    return (int) (this.millis / 1000 % 60);
   }
 }
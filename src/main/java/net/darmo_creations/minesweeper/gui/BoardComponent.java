@@ -0,0 +1,350 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.border.BevelBorder;
+
+import net.darmo_creations.gui_framework.ApplicationRegistry;
+import net.darmo_creations.minesweeper.events.CellClickedEvent;
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Tile;
+
+/**
+ * This component paints the whole board. Each cell is drawn from its tile and mouse events are
+ * mapped to cells from their coordinates. Only the cells inside the clip are painted so the cost of
+ * a repaint does not depend on the size of the board.
+ * <p>
+ * When put in a scroll pane, the board can be zoomed with Ctrl + mouse wheel and panned by dragging
+ * with the middle button.
+ *
+ * @author Damien Vergnet
+ */
+public class BoardComponent extends JComponent {
+  private static final long serialVersionUID = -3795017658021066370L;
+
+  /** Space between a cell's icon and its edges. */
+  public static final int PADDING = 4;
+  /** Smallest icon size reachable by zooming. */
+  public static final int MIN_BUTTONS_SIZE = 5;
+  /** Biggest icon size reachable by zooming. */
+  public static final int MAX_BUTTONS_SIZE = 100;
+
+  private static final float ZOOM_FACTOR = 1.25f;
+  /** Maximum number of queued cells updated per frame. */
+  private static final int CELLS_PER_FRAME = 16384;
+
+  private int rows, columns;
+  private int cellSize;
+  /** Tiles rendered for the current cell size, null until the next paint if it changed. */
+  private TileAtlas atlas;
+  private byte[] tiles;
+  private boolean locked;
+  /** Last position of the mouse while panning, null if not panning. */
+  private Point panOrigin;
+  /** Change sets waiting to be applied, a frame's worth at a time. */
+  private Deque<ChangeSet> pendingChanges;
+  private Timer pendingTimer;
+
+  public BoardComponent() {
+    this.tiles = new byte[0];
+    setBorder(new BevelBorder(BevelBorder.LOWERED));
+    setOpaque(true);
+
+    this.pendingChanges = new ArrayDeque<>();
+    this.pendingTimer = new Timer(16, e -> applyPendingChanges());
+
+    MouseAdapter mouseAdapter = new MouseAdapter() {
+      @Override
+      public void mousePressed(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+          BoardComponent.this.panOrigin = e.getLocationOnScreen();
+        }
+        else if (!BoardComponent.this.locked && (SwingUtilities.isLeftMouseButton(e) || SwingUtilities.isRightMouseButton(e))) {
+          Insets insets = getInsets();
+          int x = e.getX() - insets.left;
+          int y = e.getY() - insets.top;
+
+          if (x >= 0 && y >= 0) {
+            int row = y / BoardComponent.this.cellSize;
+            int col = x / BoardComponent.this.cellSize;
+
+            if (row < BoardComponent.this.rows && col < BoardComponent.this.columns)
+              ApplicationRegistry.EVENTS_BUS.dispatchEvent(new CellClickedEvent(row, col, SwingUtilities.isLeftMouseButton(e)));
+          }
+        }
+      }
+
+      @Override
+      public void mouseReleased(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e))
+          BoardComponent.this.panOrigin = null;
+      }
+
+      @Override
+      public void mouseDragged(MouseEvent e) {
+        if (BoardComponent.this.panOrigin != null) {
+          Point p = e.getLocationOnScreen();
+          pan(BoardComponent.this.panOrigin.x - p.x, BoardComponent.this.panOrigin.y - p.y);
+          BoardComponent.this.panOrigin = p;
+        }
+      }
+
+      @Override
+      public void mouseWheelMoved(MouseWheelEvent e) {
+        if (e.isControlDown()) {
+          int size = BoardComponent.this.cellSize - PADDING;
+          zoom(e.getWheelRotation() < 0 ? Math.max(size + 1, Math.round(size * ZOOM_FACTOR)) : Math.min(size - 1, Math.round(size / ZOOM_FACTOR)),
+              e.getPoint());
+        }
+        else if (getParent() != null) {
+          // Lets the enclosing scroll pane handle regular scrolling.
+          getParent().dispatchEvent(SwingUtilities.convertMouseEvent(BoardComponent.this, e, getParent()));
+        }
+      }
+    };
+    addMouseListener(mouseAdapter);
+    addMouseMotionListener(mouseAdapter);
+    addMouseWheelListener(mouseAdapter);
+  }
+
+  /**
+   * Resets this board. All cells are hidden and the board is unlocked.
+   * 
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param buttonsSize size of the icons in pixels
+   */
+  public void reset(int rows, int columns, int buttonsSize) {
+    this.rows = rows;
+    this.columns = columns;
+    this.tiles = new byte[rows * columns];
+    Arrays.fill(this.tiles, Tile.HIDDEN);
+    this.locked = false;
+    this.pendingChanges.clear();
+    this.pendingTimer.stop();
+    setButtonsSize(buttonsSize);
+  }
+
+  /**
+   * Changes the size of the cells. The board keeps its state.
+   * 
+   * @param buttonsSize size of the icons in pixels
+   */
+  public void setButtonsSize(int buttonsSize) {
+    if (buttonsSize + PADDING != this.cellSize)
+      this.atlas = null;
+    this.cellSize = buttonsSize + PADDING;
+    revalidate();
+    repaint();
+  }
+
+  /**
+   * Zooms in or out while keeping the point under the given anchor at the same place in the
+   * viewport.
+   * 
+   * @param buttonsSize the new size of the icons, it will be clamped to the allowed range
+   * @param anchor the fixed point, in this component's coordinates
+   */
+  public void zoom(int buttonsSize, Point anchor) {
+    int newSize = Math.max(MIN_BUTTONS_SIZE, Math.min(MAX_BUTTONS_SIZE, buttonsSize));
+    if (newSize + PADDING == this.cellSize)
+      return;
+
+    Insets insets = getInsets();
+    JViewport viewport = getViewport();
+    double x = (anchor.x - insets.left) / (double) this.cellSize;
+    double y = (anchor.y - insets.top) / (double) this.cellSize;
+    Point anchorInViewport = viewport != null ? SwingUtilities.convertPoint(this, anchor, viewport) : null;
+
+    setButtonsSize(newSize);
+
+    if (viewport != null) {
+      // Lays the view out now to get the board's new position.
+      viewport.getParent().validate();
+      Point p = SwingUtilities.convertPoint(this, insets.left + (int) (x * this.cellSize), insets.top + (int) (y * this.cellSize),
+          viewport.getView());
+      setViewPosition(viewport, p.x - anchorInViewport.x, p.y - anchorInViewport.y);
+    }
+  }
+
+  /**
+   * Scrolls the enclosing viewport, if any, by the given amount of pixels.
+   */
+  public void pan(int dx, int dy) {
+    JViewport viewport = getViewport();
+    if (viewport != null) {
+      Point p = viewport.getViewPosition();
+      setViewPosition(viewport, p.x + dx, p.y + dy);
+    }
+  }
+
+  private JViewport getViewport() {
+    return (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+  }
+
+  private static void setViewPosition(JViewport viewport, int x, int y) {
+    Dimension extent = viewport.getExtentSize();
+    Dimension view = viewport.getViewSize();
+    int maxX = Math.max(0, view.width - extent.width);
+    int maxY = Math.max(0, view.height - extent.height);
+    viewport.setViewPosition(new Point(Math.max(0, Math.min(maxX, x)), Math.max(0, Math.min(maxY, y))));
+  }
+
+  /**
+   * Returns the tile currently shown by a cell.
+   * 
+   * @param row cell's row
+   * @param col cell's column
+   * @return the tile
+   * @see Tile
+   */
+  public byte getTile(int row, int col) {
+    return this.tiles[row * this.columns + col];
+  }
+
+  /**
+   * Replaces the tiles of all the cells.
+   * 
+   * @param tiles the tiles in row-major order
+   */
+  public void setTiles(byte[] tiles) {
+    if (tiles.length != this.tiles.length)
+      throw new IllegalArgumentException("expected " + this.tiles.length + " tiles, got " + tiles.length);
+    System.arraycopy(tiles, 0, this.tiles, 0, tiles.length);
+    repaint();
+  }
+
+  /**
+   * Updates all the cells listed in the given change set. Small change sets are applied right away
+   * if no other ones are pending. Otherwise they are queued and applied in order, a frame's worth
+   * of cells at a time, so that big reveals are streamed to the screen without blocking input.
+   * 
+   * @param changes the changes to apply
+   */
+  public void applyChanges(ChangeSet changes) {
+    if (this.pendingChanges.isEmpty() && changes.size() <= CELLS_PER_FRAME) {
+      apply(changes);
+    }
+    else {
+      this.pendingChanges.add(changes);
+      if (!this.pendingTimer.isRunning())
+        this.pendingTimer.start();
+    }
+  }
+
+  private void applyPendingChanges() {
+    int budget = CELLS_PER_FRAME;
+
+    while (budget > 0 && !this.pendingChanges.isEmpty()) {
+      ChangeSet changes = this.pendingChanges.poll();
+      apply(changes);
+      budget -= changes.size();
+    }
+    if (this.pendingChanges.isEmpty())
+      this.pendingTimer.stop();
+  }
+
+  /**
+   * Updates all the cells listed in the given change set then repaints the smallest area
+   * containing them all at once.
+   * 
+   * @param changes the changes to apply
+   */
+  private void apply(ChangeSet changes) {
+    if (changes.size() == 0)
+      return;
+
+    int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE;
+    int maxRow = -1, maxCol = -1;
+
+    for (int i = 0; i < changes.size(); i++) {
+      int row = changes.getRow(i);
+      int col = changes.getColumn(i);
+
+      this.tiles[row * this.columns + col] = changes.getTile(i);
+      minRow = Math.min(minRow, row);
+      minCol = Math.min(minCol, col);
+      maxRow = Math.max(maxRow, row);
+      maxCol = Math.max(maxCol, col);
+    }
+
+    Insets insets = getInsets();
+    int size = this.cellSize;
+    repaint(insets.left + minCol * size, insets.top + minRow * size, (maxCol - minCol + 1) * size, (maxRow - minRow + 1) * size);
+  }
+
+  /**
+   * Prevents any further click on the board.
+   */
+  public void lock() {
+    this.locked = true;
+  }
+
+  @Override
+  public Dimension getPreferredSize() {
+    if (isPreferredSizeSet())
+      return super.getPreferredSize();
+    Insets insets = getInsets();
+    return new Dimension(this.columns * this.cellSize + insets.left + insets.right, this.rows * this.cellSize + insets.top + insets.bottom);
+  }
+
+  @Override
+  protected void paintComponent(Graphics g) {
+    Insets insets = getInsets();
+    Rectangle clip = g.getClipBounds();
+    if (clip == null)
+      clip = new Rectangle(getWidth(), getHeight());
+    int size = this.cellSize;
+    // The atlas is only rendered when first painted.
+    if (this.atlas == null)
+      this.atlas = new TileAtlas(size - PADDING, PADDING);
+    TileAtlas atlas = this.atlas;
+
+    g.setColor(getBackground());
+    g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+    // Only the cells intersecting the clip are painted.
+    int firstRow = Math.max(0, (clip.y - insets.top) / size);
+    int firstCol = Math.max(0, (clip.x - insets.left) / size);
+    int lastRow = Math.min(this.rows - 1, (clip.y + clip.height - 1 - insets.top) / size);
+    int lastCol = Math.min(this.columns - 1, (clip.x + clip.width - 1 - insets.left) / size);
+
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int col = firstCol; col <= lastCol; col++) {
+        atlas.draw(g, this.tiles[row * this.columns + col], insets.left + col * size, insets.top + row * size);
+      }
+    }
+  }
+}
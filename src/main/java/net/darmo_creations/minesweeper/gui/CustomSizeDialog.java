@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.gui;
+
+import java.awt.GridLayout;
+import java.util.Optional;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.border.EmptyBorder;
+
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.utils.I18n;
+import net.darmo_creations.utils.swing.dialog.AbstractDialog;
+import net.darmo_creations.utils.swing.dialog.DefaultDialogController;
+
+/**
+ * This dialog lets the user choose the number of rows, columns and mines of a custom board.
+ *
+ * @author Damien Vergnet
+ */
+public class CustomSizeDialog extends AbstractDialog {
+  private static final long serialVersionUID = 2970946434620398147L;
+
+  private JSpinner rowsSpin, columnsSpin, minesSpin;
+  private SpinnerNumberModel minesModel;
+
+  public CustomSizeDialog(JFrame owner) {
+    super(owner, Mode.VALIDATE_CANCEL_OPTION, true);
+
+    setTitle(I18n.getLocalizedString("dialog.custom_size.title"));
+    setResizable(false);
+
+    this.rowsSpin = new JSpinner(new SpinnerNumberModel(9, 1, BoardSize.MAX_SIDE, 1));
+    this.columnsSpin = new JSpinner(new SpinnerNumberModel(9, 1, BoardSize.MAX_SIDE, 1));
+    this.minesModel = new SpinnerNumberModel(10, 1, 80, 1);
+    this.minesSpin = new JSpinner(this.minesModel);
+    // There must be at least one cell without a mine.
+    this.rowsSpin.addChangeListener(e -> updateMaxMines());
+    this.columnsSpin.addChangeListener(e -> updateMaxMines());
+
+    JPanel p = new JPanel(new GridLayout(3, 2, 5, 5));
+    p.setBorder(new EmptyBorder(5, 5, 5, 5));
+    p.add(new JLabel(I18n.getLocalizedString("label.rows.text")));
+    p.add(this.rowsSpin);
+    p.add(new JLabel(I18n.getLocalizedString("label.columns.text")));
+    p.add(this.columnsSpin);
+    p.add(new JLabel(I18n.getLocalizedString("label.mines_number.text")));
+    p.add(this.minesSpin);
+    add(p);
+
+    setActionListener(new DefaultDialogController<>(this));
+
+    pack();
+    setLocationRelativeTo(owner);
+  }
+
+  private void updateMaxMines() {
+    int max = (int) this.rowsSpin.getValue() * (int) this.columnsSpin.getValue() - 1;
+
+    if (max < 1) {
+      // A 1x1 board cannot have any mine, the rows spinner is bumped instead.
+      this.rowsSpin.setValue(2);
+      return;
+    }
+    this.minesModel.setMaximum(max);
+    if ((int) this.minesSpin.getValue() > max)
+      this.minesSpin.setValue(max);
+  }
+
+  /**
+   * Sets the values shown by the spinners.
+   * 
+   * @param size the size
+   */
+  public void setBoardSize(BoardSize size) {
+    this.rowsSpin.setValue(size.getRows());
+    this.columnsSpin.setValue(size.getColumns());
+    this.minesSpin.setValue(size.getMines());
+  }
+
+  /**
+   * Returns the selected size or an empty optional if the dialog was cancelled.
+   */
+  public Optional<BoardSize> getBoardSize() {
+    if (isCancelled())
+      return Optional.empty();
+    return Optional.of(new BoardSize((int) this.rowsSpin.getValue(), (int) this.columnsSpin.getValue(), (int) this.minesSpin.getValue()));
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.border.BevelBorder;
+
+import net.darmo_creations.gui_framework.ApplicationRegistry;
+import net.darmo_creations.minesweeper.events.CellClickedEvent;
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.EndlessGrid;
+import net.darmo_creations.minesweeper.model.Tile;
+
+/**
+ * This component shows a window onto an {@link EndlessGrid}. The tiles received so far are stored
+ * by chunks, like in the grid, and all the other cells are hidden.
+ * <p>
+ * The board is panned by dragging with the middle button or with the mouse wheel (Shift + wheel
+ * for horizontal panning) and zoomed with Ctrl + mouse wheel.
+ *
+ * @author Damien Vergnet
+ */
+public class EndlessBoardComponent extends JComponent {
+  private static final long serialVersionUID = 4187006218533546017L;
+
+  /** Number of cells shown in each direction at the preferred size. */
+  private static final int VISIBLE_ROWS = 20, VISIBLE_COLUMNS = 30;
+  private static final float ZOOM_FACTOR = 1.25f;
+  /** Number of cells scrolled per mouse wheel notch. */
+  private static final int WHEEL_CELLS = 3;
+
+  private int cellSize;
+  /** Tiles rendered for the current cell size, null until the next paint if it changed. */
+  private TileAtlas atlas;
+  /** Tiles of the cells, by chunk; cells of missing chunks are hidden. */
+  private Map<Long, byte[]> tiles;
+  /** Position of the center of the view, in pixels from the top-left corner of cell (0, 0). */
+  private long centerX, centerY;
+  private boolean locked;
+  /** Last position of the mouse while panning, null if not panning. */
+  private Point panOrigin;
+
+  public EndlessBoardComponent() {
+    setBorder(new BevelBorder(BevelBorder.LOWERED));
+    setOpaque(true);
+
+    this.tiles = new HashMap<>();
+
+    MouseAdapter mouseAdapter = new MouseAdapter() {
+      @Override
+      public void mousePressed(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+          EndlessBoardComponent.this.panOrigin = e.getPoint();
+        }
+        else if (!EndlessBoardComponent.this.locked && (SwingUtilities.isLeftMouseButton(e) || SwingUtilities.isRightMouseButton(e))) {
+          int size = EndlessBoardComponent.this.cellSize;
+          int row = (int) Math.floorDiv(getOriginY() + e.getY(), size);
+          int col = (int) Math.floorDiv(getOriginX() + e.getX(), size);
+
+          ApplicationRegistry.EVENTS_BUS.dispatchEvent(new CellClickedEvent(row, col, SwingUtilities.isLeftMouseButton(e)));
+        }
+      }
+
+      @Override
+      public void mouseReleased(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e))
+          EndlessBoardComponent.this.panOrigin = null;
+      }
+
+      @Override
+      public void mouseDragged(MouseEvent e) {
+        if (EndlessBoardComponent.this.panOrigin != null) {
+          Point p = e.getPoint();
+          pan(EndlessBoardComponent.this.panOrigin.x - p.x, EndlessBoardComponent.this.panOrigin.y - p.y);
+          EndlessBoardComponent.this.panOrigin = p;
+        }
+      }
+
+      @Override
+      public void mouseWheelMoved(MouseWheelEvent e) {
+        int size = EndlessBoardComponent.this.cellSize;
+
+        if (e.isControlDown()) {
+          int buttonsSize = size - BoardComponent.PADDING;
+          zoom(e.getWheelRotation() < 0 ? Math.max(buttonsSize + 1, Math.round(buttonsSize * ZOOM_FACTOR))
+              : Math.min(buttonsSize - 1, Math.round(buttonsSize / ZOOM_FACTOR)), e.getPoint());
+        }
+        else if (e.isShiftDown()) {
+          pan(e.getWheelRotation() * WHEEL_CELLS * size, 0);
+        }
+        else {
+          pan(0, e.getWheelRotation() * WHEEL_CELLS * size);
+        }
+      }
+    };
+    addMouseListener(mouseAdapter);
+    addMouseMotionListener(mouseAdapter);
+    addMouseWheelListener(mouseAdapter);
+  }
+
+  /**
+   * Resets this board. All cells are hidden, the board is unlocked and cell (0, 0) is centered.
+   * 
+   * @param buttonsSize size of the icons in pixels
+   */
+  public void reset(int buttonsSize) {
+    this.tiles.clear();
+    this.locked = false;
+    if (buttonsSize + BoardComponent.PADDING != this.cellSize)
+      this.atlas = null;
+    this.cellSize = buttonsSize + BoardComponent.PADDING;
+    this.centerX = this.centerY = this.cellSize / 2;
+    revalidate();
+    repaint();
+  }
+
+  /**
+   * Changes the size of the cells. The cell at the center of the view stays there.
+   * 
+   * @param buttonsSize size of the icons in pixels
+   */
+  public void setButtonsSize(int buttonsSize) {
+    zoom(buttonsSize, new Point(getWidth() / 2, getHeight() / 2));
+    revalidate();
+  }
+
+  /**
+   * Zooms in or out while keeping the point under the given anchor at the same place.
+   * 
+   * @param buttonsSize the new size of the icons, it will be clamped to the allowed range
+   * @param anchor the fixed point, in this component's coordinates
+   */
+  public void zoom(int buttonsSize, Point anchor) {
+    int newSize = Math.max(BoardComponent.MIN_BUTTONS_SIZE, Math.min(BoardComponent.MAX_BUTTONS_SIZE, buttonsSize)) + BoardComponent.PADDING;
+    if (newSize == this.cellSize)
+      return;
+
+    double x = (getOriginX() + anchor.x) / (double) this.cellSize;
+    double y = (getOriginY() + anchor.y) / (double) this.cellSize;
+
+    this.cellSize = newSize;
+    this.atlas = null;
+    this.centerX += Math.round(x * newSize) - (getOriginX() + anchor.x);
+    this.centerY += Math.round(y * newSize) - (getOriginY() + anchor.y);
+    repaint();
+  }
+
+  /**
+   * Moves the view by the given amount of pixels.
+   */
+  public void pan(int dx, int dy) {
+    this.centerX += dx;
+    this.centerY += dy;
+    repaint();
+  }
+
+  /**
+   * Returns the tile currently shown by a cell.
+   * 
+   * @param row cell's row
+   * @param col cell's column
+   * @return the tile
+   * @see Tile
+   */
+  public byte getTile(int row, int col) {
+    byte[] chunk = this.tiles.get(EndlessGrid.chunkKey(row, col));
+    return chunk != null ? chunk[EndlessGrid.indexInChunk(row, col)] : Tile.HIDDEN;
+  }
+
+  /**
+   * Updates all the cells listed in the given change set.
+   * 
+   * @param changes the changes to apply
+   */
+  public void applyChanges(ChangeSet changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      int row = changes.getRow(i), col = changes.getColumn(i);
+      this.tiles.computeIfAbsent(EndlessGrid.chunkKey(row, col), k -> {
+        byte[] chunk = new byte[EndlessGrid.CHUNK_SIZE * EndlessGrid.CHUNK_SIZE];
+        Arrays.fill(chunk, Tile.HIDDEN);
+        return chunk;
+      })[EndlessGrid.indexInChunk(row, col)] = changes.getTile(i);
+    }
+    if (changes.size() > 0)
+      repaint();
+  }
+
+  /**
+   * Prevents any further click on the board.
+   */
+  public void lock() {
+    this.locked = true;
+  }
+
+  @Override
+  public Dimension getPreferredSize() {
+    if (isPreferredSizeSet())
+      return super.getPreferredSize();
+    Insets insets = getInsets();
+    return new Dimension(VISIBLE_COLUMNS * this.cellSize + insets.left + insets.right, VISIBLE_ROWS * this.cellSize + insets.top + insets.bottom);
+  }
+
+  /**
+   * Returns the horizontal position of this component's left edge, in pixels from the left of cell
+   * (0, 0).
+   */
+  private long getOriginX() {
+    Insets insets = getInsets();
+    return this.centerX - (getWidth() - insets.left - insets.right) / 2 - insets.left;
+  }
+
+  /**
+   * Returns the vertical position of this component's top edge, in pixels from the top of cell
+   * (0, 0).
+   */
+  private long getOriginY() {
+    Insets insets = getInsets();
+    return this.centerY - (getHeight() - insets.top - insets.bottom) / 2 - insets.top;
+  }
+
+  @Override
+  protected void paintComponent(Graphics g) {
+    Rectangle clip = g.getClipBounds();
+    if (clip == null)
+      clip = new Rectangle(getWidth(), getHeight());
+    int size = this.cellSize;
+    if (this.atlas == null)
+      this.atlas = new TileAtlas(size - BoardComponent.PADDING, BoardComponent.PADDING);
+    TileAtlas atlas = this.atlas;
+    long originX = getOriginX(), originY = getOriginY();
+
+    g.setColor(getBackground());
+    g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+    long firstRow = Math.floorDiv(originY + clip.y, size), lastRow = Math.floorDiv(originY + clip.y + clip.height - 1, size);
+    long firstCol = Math.floorDiv(originX + clip.x, size), lastCol = Math.floorDiv(originX + clip.x + clip.width - 1, size);
+
+    for (long row = firstRow; row <= lastRow; row++) {
+      for (long col = firstCol; col <= lastCol; col++) {
+        atlas.draw(g, getTile((int) row, (int) col), (int) (col * size - originX), (int) (row * size - originY));
+      }
+    }
+  }
+}
@@ -19,68 +19,81 @@
 package net.darmo_creations.minesweeper.gui;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.awt.GridLayout;
-import java.awt.Image;
-import java.awt.Point;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Insets;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-import java.util.List;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
 
 import javax.swing.ButtonGroup;
-import javax.swing.ImageIcon;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.KeyStroke;
-import javax.swing.SwingUtilities;
-import javax.swing.border.BevelBorder;
-import javax.swing.border.CompoundBorder;
-import javax.swing.border.EmptyBorder;
-import javax.swing.border.LineBorder;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 import net.darmo_creations.gui_framework.ApplicationRegistry;
 import net.darmo_creations.gui_framework.config.WritableConfig;
 import net.darmo_creations.gui_framework.events.UserEvent;
 import net.darmo_creations.gui_framework.gui.ApplicationFrame;
-import net.darmo_creations.minesweeper.Images;
+import net.darmo_creations.minesweeper.ConfigTags;
 import net.darmo_creations.minesweeper.MainController;
-import net.darmo_creations.minesweeper.events.CellClickedEvent;
+import net.darmo_creations.minesweeper.StartupTimer;
 import net.darmo_creations.minesweeper.events.ChangeDifficultyEvent;
 import net.darmo_creations.minesweeper.events.EventType;
 import net.darmo_creations.minesweeper.gui.options_dialog.SettingsDialog;
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.minesweeper.model.ChangeSet;
 import net.darmo_creations.minesweeper.model.Difficulty;
-import net.darmo_creations.minesweeper.model.Score;
+import net.darmo_creations.minesweeper.model.Leaderboard;
+import net.darmo_creations.minesweeper.replay.Replay;
 import net.darmo_creations.utils.I18n;
 
 public class MainFrame extends ApplicationFrame<MainController> {
   private static final long serialVersionUID = 5041068026834586876L;
 
   private static final String REM_TEXT = I18n.getLocalizedString("label.mines.text");
+  private static final String CELLS_TEXT = I18n.getLocalizedString("label.cells.text");
 
+  /** Dialogs are created on first use. */
   private ScoresDialog scoresDialog;
   private SettingsDialog optionsDialog;
+  private CustomSizeDialog customSizeDialog;
 
   private JMenu difficultyMenu;
+  private Map<Difficulty, JMenuItem> difficultyItems;
+  private JMenuItem customSizeItem;
+  private JMenuItem endlessItem;
+  private JMenuItem replayItem;
   private JMenuItem bigButtonsItem;
   private JLabel remainingLbl, timeLbl;
   private JPanel gridPnl;
+  private JScrollPane gridScrollPane;
+  private BoardComponent board;
+  private EndlessBoardComponent endlessBoard;
+  /** Tells whether the endless board is shown instead of the regular one. */
+  private boolean endless;
 
   public MainFrame(WritableConfig config) {
     super(config, true, false, true, false, null, false);
-    this.scoresDialog = new ScoresDialog(this);
-    this.optionsDialog = new SettingsDialog(this);
     centerFrame();
   }
 
@@ -105,10 +118,17 @@ public class MainFrame extends ApplicationFrame<MainController> {
     infoPnl.add(rightPnl, BorderLayout.EAST);
 
     this.gridPnl = new JPanel(new FlowLayout(FlowLayout.CENTER, 15, 15));
+    this.board = new BoardComponent();
+    this.gridPnl.add(this.board);
 
     getContentPanel().setLayout(new BorderLayout());
     getContentPanel().add(infoPnl, BorderLayout.NORTH);
-    getContentPanel().add(this.gridPnl, BorderLayout.CENTER);
+    this.gridScrollPane = new JScrollPane(this.gridPnl);
+    this.gridScrollPane.setBorder(null);
+    this.gridScrollPane.getHorizontalScrollBar().setUnitIncrement(16);
+    this.gridScrollPane.getVerticalScrollBar().setUnitIncrement(16);
+    getContentPanel().add(this.gridScrollPane, BorderLayout.CENTER);
+    this.endlessBoard = new EndlessBoardComponent();
   }
 
   @Override
@@ -126,6 +146,9 @@ public class MainFrame extends ApplicationFrame<MainController> {
     gameMenu.add(i = new JMenuItem(I18n.getLocalizedString("item.scores.text")));
     i.setMnemonic(I18n.getLocalizedMnemonic("item.scores"));
     i.addActionListener(e -> ApplicationRegistry.EVENTS_BUS.dispatchEvent(new UserEvent(EventType.SHOW_SCORES)));
+    gameMenu.add(this.replayItem = new JMenuItem(I18n.getLocalizedString("item.watch_replay.text")));
+    this.replayItem.setMnemonic(I18n.getLocalizedMnemonic("item.watch_replay"));
+    this.replayItem.addActionListener(e -> ApplicationRegistry.EVENTS_BUS.dispatchEvent(new UserEvent(EventType.WATCH_REPLAY)));
     gameMenu.add(i = new JMenuItem(I18n.getLocalizedString("item.exit.text")));
     i.setMnemonic(I18n.getLocalizedMnemonic("item.exit"));
     i.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F4, KeyEvent.ALT_DOWN_MASK));
@@ -133,13 +156,26 @@ public class MainFrame extends ApplicationFrame<MainController> {
 
     this.difficultyMenu = new JMenu(I18n.getLocalizedString("menu.difficulty.text"));
     this.difficultyMenu.setMnemonic(I18n.getLocalizedMnemonic("menu.difficulty"));
+    this.difficultyItems = new EnumMap<>(Difficulty.class);
     ButtonGroup bg = new ButtonGroup();
     for (Difficulty diff : Difficulty.values()) {
       this.difficultyMenu.add(i = new JRadioButtonMenuItem(diff.getName(), diff == Difficulty.EASY));
       i.addActionListener(e -> ApplicationRegistry.EVENTS_BUS.dispatchEvent(new ChangeDifficultyEvent(diff)));
       bg.add(i);
-      this.difficultyMenu.add(i);
+      this.difficultyItems.put(diff, i);
     }
+    this.difficultyMenu.add(this.customSizeItem = new JRadioButtonMenuItem(I18n.getLocalizedString("item.custom_size.text")));
+    this.customSizeItem.setMnemonic(I18n.getLocalizedMnemonic("item.custom_size"));
+    this.customSizeItem.addActionListener(e -> ApplicationRegistry.EVENTS_BUS.dispatchEvent(new UserEvent(EventType.CUSTOM_SIZE)));
+    bg.add(this.customSizeItem);
+    this.difficultyMenu.add(this.endlessItem = new JRadioButtonMenuItem(I18n.getLocalizedString("item.endless.text")));
+    this.endlessItem.setMnemonic(I18n.getLocalizedMnemonic("item.endless"));
+    this.endlessItem.addActionListener(e -> ApplicationRegistry.EVENTS_BUS.dispatchEvent(new UserEvent(EventType.ENDLESS_MODE)));
+    bg.add(this.endlessItem);
+    this.difficultyMenu.addSeparator();
+    this.difficultyMenu.add(i = new JCheckBoxMenuItem(I18n.getLocalizedString("item.no_guess.text"), config.getValue(ConfigTags.NO_GUESS)));
+    i.setMnemonic(I18n.getLocalizedMnemonic("item.no_guess"));
+    i.addActionListener(e -> ApplicationRegistry.EVENTS_BUS.dispatchEvent(new UserEvent(EventType.TOGGLE_NO_GUESS)));
 
     menubar.add(gameMenu, 0);
     menubar.add(this.difficultyMenu, 1);
@@ -155,33 +191,93 @@ public class MainFrame extends ApplicationFrame<MainController> {
   public void updateMenus(boolean gameRunning) {
     this.bigButtonsItem.setEnabled(!gameRunning);
     this.difficultyMenu.setEnabled(!gameRunning);
+    this.replayItem.setEnabled(!gameRunning);
+  }
+
+  /**
+   * Selects the difficulty menu item matching the given size.
+   * 
+   * @param size the current board size
+   */
+  public void selectBoardSize(BoardSize size) {
+    this.customSizeItem.setSelected(true);
+    size.getDifficulty().ifPresent(d -> this.difficultyItems.get(d).setSelected(true));
+  }
+
+  /**
+   * Selects the endless mode menu item.
+   */
+  public void selectEndless() {
+    this.endlessItem.setSelected(true);
   }
 
   public void resetGrid(Dimension size, int buttonsSize) {
-    if (this.gridPnl.getComponentCount() > 0)
-      this.gridPnl.remove(0);
-    int rows = size.height;
-    int cols = size.width;
-    JPanel grid = new JPanel(new GridLayout(rows, cols));
-    grid.setBorder(new BevelBorder(BevelBorder.LOWERED));
-
-    for (int row = 0; row < rows; row++) {
-      for (int col = 0; col < cols; col++) {
-        CellLabel b = new CellLabel(new Point(col, row), buttonsSize);
-        grid.add(b);
-      }
-    }
-    this.gridPnl.add(grid);
+    showBoard(false);
+    this.board.reset(size.height, size.width, buttonsSize);
   }
 
-  public CellLabel getCell(Point coordinates) {
-    for (Component c : ((JPanel) this.gridPnl.getComponent(0)).getComponents()) {
-      CellLabel l = (CellLabel) c;
-      if (l.getCoordinates().equals(coordinates))
-        return l;
+  /**
+   * Shows the given tiles on the regular board, used to restore a saved game.
+   * 
+   * @param tiles the tiles of all the cells in row-major order
+   */
+  public void setTiles(byte[] tiles) {
+    this.board.setTiles(tiles);
+  }
+
+  /**
+   * Shows an empty endless board.
+   * 
+   * @param buttonsSize size of the icons in pixels
+   */
+  public void resetEndlessGrid(int buttonsSize) {
+    showBoard(true);
+    this.endlessBoard.reset(buttonsSize);
+  }
+
+  /**
+   * Puts the regular or the endless board in the frame.
+   */
+  private void showBoard(boolean endless) {
+    if (endless != this.endless) {
+      this.endless = endless;
+      getContentPanel().remove(endless ? this.gridScrollPane : this.endlessBoard);
+      getContentPanel().add(endless ? this.endlessBoard : this.gridScrollPane, BorderLayout.CENTER);
+      getContentPanel().revalidate();
     }
+  }
 
-    return null;
+  /**
+   * Changes the size of the cells without resetting the board.
+   * 
+   * @param buttonsSize the new size
+   */
+  public void setButtonsSize(int buttonsSize) {
+    if (this.endless)
+      this.endlessBoard.setButtonsSize(buttonsSize);
+    else
+      this.board.setButtonsSize(buttonsSize);
+    pack();
+  }
+
+  /**
+   * Updates the cells listed in the given change set.
+   * 
+   * @param changes the changes to apply
+   */
+  public void applyChanges(ChangeSet changes) {
+    if (this.endless)
+      this.endlessBoard.applyChanges(changes);
+    else
+      this.board.applyChanges(changes);
+  }
+
+  /**
+   * Prevents any further click on the grid.
+   */
+  public void lockGrid() {
+    this.board.lock();
+    this.endlessBoard.lock();
   }
 
   /**
@@ -193,6 +289,15 @@ public class MainFrame extends ApplicationFrame<MainController> {
     this.remainingLbl.setText(REM_TEXT + " " + mines);
   }
 
+  /**
+   * Sets the number of revealed cells, shown instead of the remaining mines in endless mode.
+   * 
+   * @param cells number of cells
+   */
+  public void setRevealedCells(long cells) {
+    this.remainingLbl.setText(CELLS_TEXT + " " + cells);
+  }
+
   /**
    * Sets the timer.
    * 
@@ -208,6 +313,29 @@ public class MainFrame extends ApplicationFrame<MainController> {
     return String.format("%02d", v);
   }
 
+  /**
+   * Sizes the frame to fit its content without exceeding the usable area of the screen. Boards
+   * bigger than that are scrolled.
+   */
+  @Override
+  public void pack() {
+    super.pack();
+    GraphicsConfiguration gc = getGraphicsConfiguration();
+    Rectangle screen = gc.getBounds();
+    Insets insets = Toolkit.getDefaultToolkit().getScreenInsets(gc);
+    int width = Math.min(getWidth(), screen.width - insets.left - insets.right);
+    int height = Math.min(getHeight(), screen.height - insets.top - insets.bottom);
+
+    if (width != getWidth() || height != getHeight())
+      setSize(width, height);
+  }
+
+  @Override
+  public void paint(Graphics g) {
+    super.paint(g);
+    StartupTimer.firstPaint();
+  }
+
   /**
    * Centers the frame on the screen.
    */
@@ -221,7 +349,9 @@ public class MainFrame extends ApplicationFrame<MainController> {
    * 
    * @param scores the scores
    */
-  public void showScoresDialog(final Map<Difficulty, List<Score>> scores) {
+  public void showScoresDialog(final Map<BoardSize, Leaderboard> scores) {
+    if (this.scoresDialog == null)
+      this.scoresDialog = new ScoresDialog(this);
     this.scoresDialog.setScores(scores);
     this.scoresDialog.setVisible(true);
   }
@@ -233,57 +363,65 @@ public class MainFrame extends ApplicationFrame<MainController> {
    * @return the new config
    */
   public Optional<WritableConfig> showOptionsDialog(WritableConfig config) {
+    if (this.optionsDialog == null)
+      this.optionsDialog = new SettingsDialog(this);
     this.optionsDialog.setConfig(config.clone());
     this.optionsDialog.setVisible(true);
     return this.optionsDialog.getConfig();
   }
 
-  public final class CellLabel extends JLabel {
-    private static final long serialVersionUID = 2612596853217381012L;
-
-    public static final int PADDING = 4;
-
-    private final Point coordinates;
-    private boolean locked;
-
-    private CellLabel(final Point coordinates, int buttonsSize) {
-      this.coordinates = coordinates;
-      this.locked = false;
-
-      setIcon(Images.EMPTY_CELL);
-      setBorder(new BevelBorder(BevelBorder.RAISED));
-      setOpaque(true);
-      setBackground(Color.LIGHT_GRAY);
-
-      setPreferredSize(new Dimension(buttonsSize + PADDING, buttonsSize + PADDING));
-
-      addMouseListener(new MouseAdapter() {
-        @Override
-        public void mousePressed(MouseEvent e) {
-          if (!CellLabel.this.locked && (SwingUtilities.isLeftMouseButton(e) || SwingUtilities.isRightMouseButton(e))) {
-            ApplicationRegistry.EVENTS_BUS.dispatchEvent(new CellClickedEvent(CellLabel.this, SwingUtilities.isLeftMouseButton(e)));
-          }
-        }
-      });
-    }
+  /**
+   * Shows the custom size dialog.
+   * 
+   * @param size the current size
+   * @return the chosen size or an empty optional if the dialog was cancelled
+   */
+  public Optional<BoardSize> showCustomSizeDialog(BoardSize size) {
+    if (this.customSizeDialog == null)
+      this.customSizeDialog = new CustomSizeDialog(this);
+    this.customSizeDialog.setBoardSize(size);
+    this.customSizeDialog.setVisible(true);
+    return this.customSizeDialog.getBoardSize();
+  }
 
-    public Point getCoordinates() {
-      return this.coordinates;
-    }
+  /**
+   * Asks the user for a replay file.
+   * 
+   * @param directory the directory shown first
+   * @return the chosen file or an empty optional if the dialog was cancelled
+   */
+  public Optional<Path> showOpenReplayDialog(Path directory) {
+    JFileChooser chooser = new JFileChooser(directory.toFile());
 
-    public void lock() {
-      this.locked = true;
-    }
+    chooser.setFileFilter(new FileNameExtensionFilter(I18n.getLocalizedString("label.replay_filter.text"), Replay.EXTENSION));
+    if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
+      return Optional.of(chooser.getSelectedFile().toPath());
+    return Optional.empty();
+  }
 
-    public void click() {
-      CellLabel.this.setBorder(new CompoundBorder(new LineBorder(Color.GRAY.darker(), 1), new EmptyBorder(1, 1, 1, 1)));
+  /**
+   * Asks the user for the speed of a replay.
+   * 
+   * @return the speed factor or an empty optional if the dialog was cancelled
+   */
+  public Optional<Double> showReplaySpeedDialog() {
+    JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    JSpinner speedSpinner = new JSpinner(new SpinnerNumberModel(1, 0.1, 10_000, 0.5));
+
+    panel.add(new JLabel(I18n.getLocalizedString("label.replay_speed.text")));
+    panel.add(speedSpinner);
+    int choice = JOptionPane.showConfirmDialog(this, panel, I18n.getLocalizedString("dialog.replay_speed.title"), JOptionPane.OK_CANCEL_OPTION,
+        JOptionPane.PLAIN_MESSAGE);
+
+    if (choice != JOptionPane.OK_OPTION)
+      return Optional.empty();
+    try {
+      // Keeps the value typed by the user even if the field still has the focus.
+      speedSpinner.commitEdit();
     }
-
-    public void setIcon(ImageIcon imageIcon) {
-      Dimension size = getPreferredSize();
-      Image newimg = imageIcon.getImage().getScaledInstance(size.width - PADDING, size.height - PADDING, Image.SCALE_SMOOTH);
-
-      super.setIcon(new ImageIcon(newimg));
+    catch (ParseException ex) {
+      // The last valid value is used.
     }
+    return Optional.of(((Number) speedSpinner.getValue()).doubleValue());
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.gui;
+
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+import javax.swing.Timer;
+
+import net.darmo_creations.minesweeper.replay.Replay;
+
+/**
+ * Sends the moves of a replay at their recorded times, scaled by a speed factor. Moves are sent
+ * from the event dispatch thread, all those that are due at each tick at once, so that any speed
+ * can be reached.
+ *
+ * @author Damien Vergnet
+ */
+public class ReplayAnimator {
+  /** Delay between two ticks in milliseconds. */
+  private static final int TICK_DELAY = 15;
+
+  private final Replay replay;
+  private final double speed;
+  private final IntConsumer moveHandler;
+  private final LongConsumer timeHandler;
+  private final Timer timer;
+  private long start;
+  private int next;
+
+  /**
+   * Creates an animator.
+   * 
+   * @param replay the replay
+   * @param speed the speed factor
+   * @param moveHandler receives the index of each move when it is due
+   * @param timeHandler receives the replay's current time in milliseconds at each tick
+   */
+  public ReplayAnimator(Replay replay, double speed, IntConsumer moveHandler, LongConsumer timeHandler) {
+    if (!(speed > 0))
+      throw new IllegalArgumentException("speed must be positive");
+    this.replay = replay;
+    this.speed = speed;
+    this.moveHandler = moveHandler;
+    this.timeHandler = timeHandler;
+    this.timer = new Timer(TICK_DELAY, e -> tick());
+  }
+
+  /**
+   * Starts the playback from the first move.
+   */
+  public void start() {
+    this.start = System.nanoTime();
+    this.next = 0;
+    this.timer.start();
+  }
+
+  /**
+   * Stops the playback.
+   */
+  public void stop() {
+    this.timer.stop();
+  }
+
+  public boolean isRunning() {
+    return this.timer.isRunning();
+  }
+
+  private void tick() {
+    long time = (long) ((System.nanoTime() - this.start) / 1e6 * this.speed);
+    int movesNb = this.replay.getMovesNumber();
+
+    while (this.next < movesNb && this.replay.getTime(this.next) <= time) {
+      this.moveHandler.accept(this.next++);
+    }
+    this.timeHandler.accept(Math.min(time, this.replay.getDuration()));
+    if (this.next == movesNb)
+      stop();
+  }
+}
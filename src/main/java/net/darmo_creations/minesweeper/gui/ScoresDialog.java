@@ -21,23 +21,24 @@ package net.darmo_creations.minesweeper.gui;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTable;
-import javax.swing.table.DefaultTableModel;
 
+import net.darmo_creations.minesweeper.model.BoardSize;
 import net.darmo_creations.minesweeper.model.Difficulty;
-import net.darmo_creations.minesweeper.model.Score;
+import net.darmo_creations.minesweeper.model.Leaderboard;
 import net.darmo_creations.utils.I18n;
 import net.darmo_creations.utils.swing.dialog.AbstractDialog;
 import net.darmo_creations.utils.swing.dialog.DefaultDialogController;
 
 /**
- * This dialog shows the highscores.
+ * This dialog shows the highscores. There is a tab for each difficulty followed by one for each
+ * custom size having scores.
  *
  * @author Damien Vergnet
  */
@@ -45,7 +46,7 @@ public class ScoresDialog extends AbstractDialog {
   private static final long serialVersionUID = -1996609441443859066L;
 
   private JTabbedPane scoresTbl;
-  private Map<Difficulty, JTable> tabs;
+  private Map<BoardSize, ScoresTableModel> tabs;
 
   public ScoresDialog(JFrame owner) {
     super(owner, Mode.CLOSE_OPTION, true);
@@ -56,12 +57,7 @@ public class ScoresDialog extends AbstractDialog {
     this.tabs = new HashMap<>();
     this.scoresTbl = new JTabbedPane();
     for (Difficulty difficulty : Difficulty.values()) {
-      JTable p = new JTable(new DefaultTableModel(
-          new String[]{I18n.getLocalizedString("label.username.text"), I18n.getLocalizedString("label.time.text")}, 0));
-      p.setEnabled(false);
-      p.getTableHeader().setReorderingAllowed(false);
-      this.tabs.put(difficulty, p);
-      this.scoresTbl.addTab(difficulty.getName(), new JScrollPane(p));
+      addTab(BoardSize.of(difficulty));
     }
 
     add(this.scoresTbl, BorderLayout.CENTER);
@@ -71,25 +67,20 @@ public class ScoresDialog extends AbstractDialog {
     setLocationRelativeTo(owner);
   }
 
-  public void setScores(final Map<Difficulty, List<Score>> scores) {
-    for (Map.Entry<Difficulty, List<Score>> entry : scores.entrySet()) {
-      DefaultTableModel model = ((DefaultTableModel) this.tabs.get(entry.getKey()).getModel());
-
-      model.setRowCount(0);
-      entry.getValue().forEach(score -> {
-        long time = score.getDuration().getSeconds();
-        long seconds = time % 60;
-        long minutes = (time / 60) % 60;
-        long hours = time / 3600;
-        String s;
-
-        if (hours > 0)
-          s = String.format("%02d:%02d:%02d", hours, minutes, seconds);
-        else
-          s = String.format("%02d:%02d", minutes, seconds);
+  private void addTab(BoardSize size) {
+    ScoresTableModel model = new ScoresTableModel();
+    JTable p = new JTable(model);
+    p.setEnabled(false);
+    p.getTableHeader().setReorderingAllowed(false);
+    this.tabs.put(size, model);
+    this.scoresTbl.addTab(size.getName(), new JScrollPane(p));
+  }
 
-        model.addRow(new String[]{score.getUsername(), s});
-      });
+  public void setScores(final Map<BoardSize, Leaderboard> scores) {
+    for (BoardSize size : new TreeSet<>(scores.keySet())) {
+      if (!this.tabs.containsKey(size))
+        addTab(size);
+      this.tabs.get(size).setLeaderboard(scores.get(size));
     }
   }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.gui;
+
+import javax.swing.table.AbstractTableModel;
+
+import net.darmo_creations.minesweeper.model.Leaderboard;
+import net.darmo_creations.minesweeper.model.Score;
+import net.darmo_creations.utils.I18n;
+
+/**
+ * Table model showing a leaderboard. Rows are read from the leaderboard and formatted on demand,
+ * so only the visible rows cost anything whatever the number of scores.
+ *
+ * @author Damien Vergnet
+ */
+class ScoresTableModel extends AbstractTableModel {
+  private static final long serialVersionUID = 6325930464911539316L;
+
+  private static final String[] COLUMNS = {I18n.getLocalizedString("label.username.text"), I18n.getLocalizedString("label.time.text")};
+
+  private Leaderboard leaderboard;
+
+  /**
+   * Sets the leaderboard to show.
+   * 
+   * @param leaderboard the leaderboard; may be null
+   */
+  public void setLeaderboard(Leaderboard leaderboard) {
+    this.leaderboard = leaderboard;
+    fireTableDataChanged();
+  }
+
+  @Override
+  public int getRowCount() {
+    return this.leaderboard == null ? 0 : this.leaderboard.size();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMNS.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMNS[column];
+  }
+
+  @Override
+  public Object getValueAt(int rowIndex, int columnIndex) {
+    Score score = this.leaderboard.get(rowIndex);
+    return columnIndex == 0 ? score.getUsername() : formatTime(score.getDuration().toMillis());
+  }
+
+  private static String formatTime(long time) {
+    long millis = time % 1000;
+    long seconds = (time / 1000) % 60;
+    long minutes = (time / 60_000) % 60;
+    long hours = time / 3_600_000;
+
+    if (hours > 0)
+      return String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds, millis);
+    return String.format("%02d:%02d.%03d", minutes, seconds, millis);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.gui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+import javax.swing.border.BevelBorder;
+import javax.swing.border.Border;
+
+import net.darmo_creations.minesweeper.Images;
+import net.darmo_creations.minesweeper.model.Tile;
+
+/**
+ * Sprite atlas holding every tile pre-rendered at a given cell size. Tiles are laid out in a row,
+ * in the order of their code, so drawing a cell is a single blit.
+ *
+ * @author Damien Vergnet
+ */
+final class TileAtlas {
+  private static final Color HIDDEN_COLOR = Color.LIGHT_GRAY;
+  private static final Color REVEALED_COLOR = new Color(150, 150, 150);
+  private static final Color REVEALED_BORDER_COLOR = Color.GRAY.darker();
+  private static final Color EXPLODED_COLOR = Color.RED;
+  private static final Border HIDDEN_BORDER = new BevelBorder(BevelBorder.RAISED, HIDDEN_COLOR.brighter().brighter(), HIDDEN_COLOR.brighter(),
+      HIDDEN_COLOR.darker().darker(), HIDDEN_COLOR.darker());
+
+  private final int buttonsSize;
+  private final int cellSize;
+  private final BufferedImage image;
+
+  /**
+   * Renders all tiles.
+   * 
+   * @param buttonsSize size of the icons in pixels
+   * @param padding space between the icons and the edges of the cells
+   */
+  TileAtlas(int buttonsSize, int padding) {
+    this.buttonsSize = buttonsSize;
+    this.cellSize = buttonsSize + padding;
+    this.image = createImage(this.cellSize * Tile.COUNT, this.cellSize);
+
+    Graphics2D g = this.image.createGraphics();
+    for (byte tile = 0; tile < Tile.COUNT; tile++) {
+      renderTile(g, tile, tile * this.cellSize, padding);
+    }
+    g.dispose();
+  }
+
+  /**
+   * Draws a tile.
+   * 
+   * @param g the graphics to draw on
+   * @param tile the tile
+   * @param x left edge of the cell
+   * @param y top edge of the cell
+   */
+  void draw(Graphics g, byte tile, int x, int y) {
+    int sx = tile * this.cellSize;
+    g.drawImage(this.image, x, y, x + this.cellSize, y + this.cellSize, sx, 0, sx + this.cellSize, this.cellSize, null);
+  }
+
+  private void renderTile(Graphics g, byte tile, int x, int padding) {
+    int size = this.cellSize;
+
+    if (Tile.isRevealed(tile) || tile == Tile.EXPLODED_MINE) {
+      g.setColor(tile == Tile.EXPLODED_MINE ? EXPLODED_COLOR : REVEALED_COLOR);
+      g.fillRect(x, 0, size, size);
+      g.setColor(REVEALED_BORDER_COLOR);
+      g.drawRect(x, 0, size - 1, size - 1);
+    }
+    else {
+      g.setColor(HIDDEN_COLOR);
+      g.fillRect(x, 0, size, size);
+      HIDDEN_BORDER.paintBorder(null, g, x, 0, size, size);
+    }
+
+    Image icon = getIcon(tile).getImage().getScaledInstance(this.buttonsSize, this.buttonsSize, Image.SCALE_SMOOTH);
+    // ImageIcon waits for the scaled image to be fully produced.
+    g.drawImage(new ImageIcon(icon).getImage(), x + padding / 2, padding / 2, null);
+  }
+
+  private static BufferedImage createImage(int width, int height) {
+    if (GraphicsEnvironment.isHeadless())
+      return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(width,
+        height, Transparency.OPAQUE);
+  }
+
+  private static ImageIcon getIcon(byte tile) {
+    switch (tile) {
+      case Tile.HIDDEN:
+        return Images.getEmptyCell();
+      case Tile.FLAG:
+        return Images.getFlag();
+      case Tile.MARK:
+        return Images.getMark();
+      case Tile.MINE:
+      case Tile.EXPLODED_MINE:
+        return Images.getMine();
+      case Tile.WRONG_FLAG:
+        return Images.getWrongMine();
+      default:
+        return Images.getNumber(tile);
+    }
+  }
+}
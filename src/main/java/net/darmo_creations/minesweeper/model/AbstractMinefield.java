@@ -0,0 +1,542 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The rules of the game, shared by all the minefields. The state of every cell is packed into a
+ * single byte of a {@link CellStorage}, the lower 4 bits holding the mine/clicked/flagged/marked
+ * flags and the upper 4 bits the number of nearby mines. Subclasses provide the storage, fill the
+ * numbers of nearby mines and map coordinates to the cells' indices; the rules only move from a
+ * cell to its neighbors inside the bounds given to the constructor.
+ * <p>
+ * The number of flags around each cell can be kept in a second storage, updated whenever a flag is
+ * put or removed; otherwise it is counted when needed. Flood fills only keep the cells that are yet
+ * to be expanded or sent to the sink, so streaming big reveals does not need memory proportional to
+ * their size.
+ *
+ * @author Damien Vergnet
+ */
+public abstract class AbstractMinefield implements Minefield {
+  static final int MINE = 1;
+  static final int CLICKED = 1 << 1;
+  static final int FLAGGED = 1 << 2;
+  static final int MARKED = 1 << 3;
+  static final int NEARBY_MINES_SHIFT = 4;
+
+  private static final int ALREADY_CLICKED = -2;
+  private static final int CANNOT_CLICK = -1;
+  private static final int NOTHING = 0;
+  private static final int MINE_CLICKED = 1;
+
+  /** Packed state of each cell. */
+  final CellStorage cells;
+  /** Number of flagged cells around each cell, null if they are counted when needed. */
+  private final CellStorage nearbyFlags;
+  private final int minRow, maxRow, minColumn, maxColumn;
+  /** Number of cells without mines, the game is won once they are all revealed. */
+  private final long safeCells;
+  /** Remaining number of flags. */
+  int flags;
+  /** Number of revealed cells without mines. */
+  long revealedCells;
+  long seed;
+  boolean generated;
+  /** {@link Grid#WIN}, {@link Grid#LOST} or 0 if the game is still running. */
+  int result;
+  /**
+   * Cells revealed by the current action that have not been both expanded and sent to the sink;
+   * {@link #flushed} and the explorations' positions are relative to its start.
+   */
+  private long[] revealed;
+  private int revealedSize;
+  /** Receives partial change sets during the current action, null if not streaming. */
+  private Consumer<ChangeSet> sink;
+  private int batchSize;
+  /** Number of revealed cells of the current action already sent to the sink. */
+  private int flushed;
+
+  /**
+   * Creates a minefield.
+   * 
+   * @param cells the cells
+   * @param nearbyFlags the table of nearby flags, null to count them when needed
+   * @param minRow the first row
+   * @param maxRow the last row
+   * @param minColumn the first column
+   * @param maxColumn the last column
+   * @param safeCells the number of cells without mines
+   */
+  AbstractMinefield(CellStorage cells, CellStorage nearbyFlags, int minRow, int maxRow, int minColumn, int maxColumn, long safeCells) {
+    this.cells = cells;
+    this.nearbyFlags = nearbyFlags;
+    this.minRow = minRow;
+    this.maxRow = maxRow;
+    this.minColumn = minColumn;
+    this.maxColumn = maxColumn;
+    this.safeCells = safeCells;
+    this.revealed = new long[16];
+    this.generated = false;
+    this.result = 0;
+  }
+
+  /**
+   * Returns the index of the cell at the given coordinates.
+   */
+  abstract long index(int row, int col);
+
+  /**
+   * Returns the row of the given cell.
+   */
+  abstract int rowOf(long cell);
+
+  /**
+   * Returns the column of the given cell.
+   */
+  abstract int columnOf(long cell);
+
+  /**
+   * Returns the remaining number of flags.
+   */
+  public int getRemainingFlags() {
+    return this.flags;
+  }
+
+  /**
+   * Returns the number of revealed cells without mines.
+   */
+  public long getRevealedCells() {
+    return this.revealedCells;
+  }
+
+  /**
+   * Tells whether the mines have been generated.
+   */
+  @Override
+  public boolean areMinesGenerated() {
+    return this.generated;
+  }
+
+  /**
+   * Returns {@link Grid#WIN} or {@link Grid#LOST} if the game is over, 0 otherwise.
+   */
+  @Override
+  public int getResult() {
+    return this.result;
+  }
+
+  /**
+   * Returns the seed used to generate the mines.
+   */
+  @Override
+  public long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * Returns the tile of the given cell as seen by the player.
+   * 
+   * @param row the row
+   * @param col the column
+   * @see Tile
+   */
+  @Override
+  public byte getTile(int row, int col) {
+    checkCoordinates(row, col);
+    return getTile(index(row, col));
+  }
+
+  /**
+   * Performs an action on a cell. Cells revealed by a flood fill are sent to the given sink in
+   * batches while the exploration goes on; the returned change set only contains the remaining
+   * cells. Applying all the partial change sets followed by the returned one gives the same result
+   * as {@link #play(int, int, Action)}.
+   * 
+   * @param row the cell's row
+   * @param col the cell's column
+   * @param action the action
+   * @param sink receives the partial change sets, in order; may be null
+   * @param batchSize number of revealed cells per partial change set
+   * @return the remaining cells whose tile changed and the result of the action
+   */
+  @Override
+  public ChangeSet play(int row, int col, Action action, Consumer<ChangeSet> sink, int batchSize) {
+    if (!this.generated)
+      throw new IllegalStateException("mines not generated");
+    checkCoordinates(row, col);
+    if (sink != null && batchSize <= 0)
+      throw new IllegalArgumentException("invalid batch size " + batchSize);
+
+    ChangeSet changes = newChangeSet();
+
+    this.sink = sink;
+    this.batchSize = batchSize;
+    this.flushed = 0;
+    this.revealedSize = 0;
+    try {
+      if (this.result == 0) {
+        if (action == Action.MAIN_CLICK)
+          this.result = performMainClick(index(row, col), changes);
+        else
+          performSecondaryClick(index(row, col), changes);
+      }
+    }
+    finally {
+      this.sink = null;
+    }
+    changes.setResult(this.result);
+    setCounters(changes);
+
+    return changes;
+  }
+
+  private int performMainClick(long cell, ChangeSet changes) {
+    if (!is(cell, FLAGGED)) {
+      int nearbyMines = getNearbyMinesNumber(cell);
+
+      if (is(cell, CLICKED) && getNearbyFlagsNumber(cell) == nearbyMines) {
+        return exploreNeighbors(cell, changes);
+      }
+      else {
+        return click(cell, nearbyMines, changes);
+      }
+    }
+    return 0;
+  }
+
+  private int click(long cell, int nearbyMines, ChangeSet changes) {
+    switch (click(cell)) {
+      case NOTHING:
+        addChange(changes, cell, (byte) nearbyMines);
+        if (nearbyMines == 0) {
+          exploreGrid(cell);
+          addRevealed(changes);
+        }
+        if (checkVictory()) {
+          return Grid.WIN;
+        }
+        break;
+      case MINE_CLICKED:
+        addChange(changes, cell, Tile.EXPLODED_MINE);
+        return Grid.LOST;
+    }
+    return 0;
+  }
+
+  /**
+   * Clicks the given cell then returns the result for this action.
+   *
+   * @param cell the cell's index
+   * @return one of those values: {@code ALREADY_CLICKED}, {@code CANNOT_CLICK}, {@code NOTHING},
+   *         {@code MINE_CLICKED}
+   */
+  private int click(long cell) {
+    int value = this.cells.get(cell);
+
+    if ((value & CLICKED) != 0)
+      return ALREADY_CLICKED;
+    if ((value & FLAGGED) != 0)
+      return CANNOT_CLICK;
+
+    this.cells.set(cell, (value | CLICKED) & ~MARKED);
+    if ((value & MINE) != 0)
+      return MINE_CLICKED;
+    this.revealedCells++;
+    return NOTHING;
+  }
+
+  private int exploreNeighbors(long center, ChangeSet changes) {
+    int row = rowOf(center), col = columnOf(center);
+    boolean mine = false;
+
+    for (int r = Math.max(row - 1, this.minRow); !mine && r <= Math.min(row + 1, this.maxRow); r++) {
+      for (int c = Math.max(col - 1, this.minColumn); !mine && c <= Math.min(col + 1, this.maxColumn); c++) {
+        if (r != row || c != col) {
+          long cell = index(r, c);
+          int result = click(cell);
+
+          if (result == MINE_CLICKED) {
+            mine = true;
+            addChange(changes, cell, Tile.EXPLODED_MINE);
+          }
+          else if (result == NOTHING) {
+            pushRevealed(cell);
+            if (getNearbyMinesNumber(cell) == 0)
+              exploreGrid(cell);
+          }
+        }
+      }
+    }
+    addRevealed(changes);
+
+    if (mine) {
+      return Grid.LOST;
+    }
+    else if (checkVictory()) {
+      return Grid.WIN;
+    }
+    return 0;
+  }
+
+  private void performSecondaryClick(long cell, ChangeSet changes) {
+    int value = this.cells.get(cell);
+
+    if ((value & CLICKED) == 0) {
+      if ((value & FLAGGED) != 0) {
+        this.cells.set(cell, (value & ~FLAGGED) | MARKED);
+        updateNearbyFlags(cell, -1);
+        this.flags++;
+      }
+      else if ((value & MARKED) != 0) {
+        this.cells.set(cell, value & ~MARKED);
+      }
+      else {
+        this.cells.set(cell, value | FLAGGED);
+        updateNearbyFlags(cell, 1);
+        this.flags--;
+      }
+      addChange(changes, cell, getTile(cell));
+    }
+  }
+
+  /**
+   * Explores all the non-clicked cells around the given starting cell, which must have already been
+   * clicked and have no mines nearby. Revealed cells are appended to {@link #revealed}, that also
+   * serves as the work queue: cells are clicked as soon as they are discovered, hence each cell is
+   * visited at most once. When streaming, the cells that have been both expanded and sent to the
+   * sink are dropped from the queue.
+   *
+   * @param start the starting cell's index
+   */
+  private void exploreGrid(long start) {
+    int next = this.revealedSize;
+    long cell = start;
+
+    while (true) {
+      int row = rowOf(cell), col = columnOf(cell);
+
+      for (int r = Math.max(row - 1, this.minRow); r <= Math.min(row + 1, this.maxRow); r++) {
+        for (int c = Math.max(col - 1, this.minColumn); c <= Math.min(col + 1, this.maxColumn); c++) {
+          long neighbor = index(r, c);
+          // A neighbor of an empty cell cannot be a mine.
+          if (click(neighbor) == NOTHING)
+            pushRevealed(neighbor);
+        }
+      }
+      if (this.sink != null && this.revealedSize - this.flushed >= this.batchSize) {
+        flush();
+        // All the cells before next have been expanded and sent.
+        System.arraycopy(this.revealed, next, this.revealed, 0, this.revealedSize - next);
+        this.revealedSize -= next;
+        this.flushed -= next;
+        next = 0;
+      }
+
+      // Look for the next revealed empty cell to expand.
+      do {
+        if (next == this.revealedSize)
+          return;
+        cell = this.revealed[next++];
+      } while (getNearbyMinesNumber(cell) != 0);
+    }
+  }
+
+  private void pushRevealed(long cell) {
+    if (this.revealedSize == this.revealed.length)
+      this.revealed = Arrays.copyOf(this.revealed, this.revealedSize * 2);
+    this.revealed[this.revealedSize++] = cell;
+  }
+
+  /**
+   * Sends the revealed cells that have not been sent yet to the sink as a new change set.
+   */
+  private void flush() {
+    ChangeSet changes = newChangeSet();
+
+    addRevealed(changes);
+    this.flushed = this.revealedSize;
+    setCounters(changes);
+    this.sink.accept(changes);
+  }
+
+  /**
+   * Adds the revealed cells to the change set, except those already sent to the sink.
+   */
+  private void addRevealed(ChangeSet changes) {
+    for (int i = this.flushed; i < this.revealedSize; i++) {
+      long cell = this.revealed[i];
+      addChange(changes, cell, (byte) getNearbyMinesNumber(cell));
+    }
+  }
+
+  /**
+   * Adds the given cell to the change set if it has to be shown at the end of the game: mines that
+   * have not exploded and wrongly flagged cells.
+   * 
+   * @param cell the cell's index
+   * @param changes the change set
+   */
+  void addEndTile(long cell, ChangeSet changes) {
+    int value = this.cells.get(cell);
+
+    if ((value & MINE) != 0 && (value & CLICKED) == 0) {
+      addChange(changes, cell, Tile.MINE);
+    }
+    else if ((value & MINE) == 0 && (value & FLAGGED) != 0) {
+      addChange(changes, cell, Tile.WRONG_FLAG);
+    }
+  }
+
+  /**
+   * Creates an empty change set for this minefield.
+   */
+  ChangeSet newChangeSet() {
+    return new ChangeSet();
+  }
+
+  /**
+   * Adds a cell to a change set created by {@link #newChangeSet()}.
+   */
+  void addChange(ChangeSet changes, long cell, byte tile) {
+    changes.add(rowOf(cell), columnOf(cell), tile);
+  }
+
+  /**
+   * Sets the remaining flags and revealed cells of the given change set.
+   */
+  void setCounters(ChangeSet changes) {
+    changes.setRemainingFlags(getRemainingFlags());
+    changes.setRevealedCells(this.revealedCells);
+  }
+
+  /**
+   * Returns {@code true} if the only remaining cells contain mines; false otherwise.
+   */
+  private boolean checkVictory() {
+    return this.revealedCells == this.safeCells;
+  }
+
+  /**
+   * Increments the number of nearby mines of every cell adjacent to the given one.
+   *
+   * @param cell the mine's index
+   */
+  void incrementNearbyMines(long cell) {
+    int row = rowOf(cell), col = columnOf(cell);
+
+    for (int r = Math.max(row - 1, this.minRow); r <= Math.min(row + 1, this.maxRow); r++) {
+      for (int c = Math.max(col - 1, this.minColumn); c <= Math.min(col + 1, this.maxColumn); c++) {
+        if (r != row || c != col) {
+          long neighbor = index(r, c);
+          this.cells.set(neighbor, this.cells.get(neighbor) + (1 << NEARBY_MINES_SHIFT));
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the given amount to the number of nearby flags of every cell adjacent to the given one.
+   * Does nothing if nearby flags are counted when needed.
+   *
+   * @param cell the flagged/unflagged cell's index
+   * @param delta 1 if a flag was put, -1 if it was removed
+   */
+  void updateNearbyFlags(long cell, int delta) {
+    if (this.nearbyFlags == null)
+      return;
+    int row = rowOf(cell), col = columnOf(cell);
+
+    for (int r = Math.max(row - 1, this.minRow); r <= Math.min(row + 1, this.maxRow); r++) {
+      for (int c = Math.max(col - 1, this.minColumn); c <= Math.min(col + 1, this.maxColumn); c++) {
+        if (r != row || c != col) {
+          long neighbor = index(r, c);
+          this.nearbyFlags.set(neighbor, this.nearbyFlags.get(neighbor) + delta);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of mines in the 8 adjacent cells to the given one.
+   *
+   * @param cell the cell's index
+   */
+  private int getNearbyMinesNumber(long cell) {
+    return this.cells.get(cell) >>> NEARBY_MINES_SHIFT;
+  }
+
+  /**
+   * Returns the number of flagged cells in the 8 adjacent cells to the given one.
+   *
+   * @param cell the cell's index
+   */
+  private int getNearbyFlagsNumber(long cell) {
+    if (this.nearbyFlags != null)
+      return this.nearbyFlags.get(cell);
+
+    int row = rowOf(cell), col = columnOf(cell);
+    int n = 0;
+    for (int r = Math.max(row - 1, this.minRow); r <= Math.min(row + 1, this.maxRow); r++) {
+      for (int c = Math.max(col - 1, this.minColumn); c <= Math.min(col + 1, this.maxColumn); c++) {
+        if ((r != row || c != col) && is(index(r, c), FLAGGED))
+          n++;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Returns the tile of the given cell as seen by the player.
+   * 
+   * @param cell the cell's index
+   */
+  byte getTile(long cell) {
+    int value = this.cells.get(cell);
+
+    if ((value & CLICKED) != 0)
+      return (value & MINE) != 0 ? Tile.EXPLODED_MINE : (byte) (value >>> NEARBY_MINES_SHIFT);
+    if ((value & FLAGGED) != 0)
+      return Tile.FLAG;
+    if ((value & MARKED) != 0)
+      return Tile.MARK;
+    return Tile.HIDDEN;
+  }
+
+  /**
+   * Checks whether the given coordinates are inside the bounds.
+   * 
+   * @throws IndexOutOfBoundsException if the coordinates are outside of the bounds
+   */
+  void checkCoordinates(int row, int col) {
+    if (row < this.minRow || row > this.maxRow || col < this.minColumn || col > this.maxColumn)
+      throw new IndexOutOfBoundsException("cell (" + row + ", " + col + ") out of grid");
+  }
+
+  /**
+   * Tells whether the given cell has the given flag set.
+   *
+   * @param cell the cell's index
+   * @param flag the flag
+   */
+  private boolean is(long cell, int flag) {
+    return (this.cells.get(cell) & flag) != 0;
+  }
+}
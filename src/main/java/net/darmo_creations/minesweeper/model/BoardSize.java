@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.util.Optional;
+
+import net.darmo_creations.utils.I18n;
+
+/**
+ * Dimensions and number of mines of a board. Sizes matching a {@link Difficulty} are presets, the
+ * others are custom sizes.
+ *
+ * @author Damien Vergnet
+ */
+public final class BoardSize implements Comparable<BoardSize> {
+  /** Maximum number of rows or columns. */
+  public static final int MAX_SIDE = 5000;
+
+  private final int rows, columns, mines;
+
+  /**
+   * Creates a board size.
+   * 
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param mines number of mines
+   * @throws IllegalArgumentException if a dimension is out of bounds or there are too many mines
+   */
+  public BoardSize(int rows, int columns, int mines) {
+    if (rows <= 0 || columns <= 0 || rows > MAX_SIDE || columns > MAX_SIDE)
+      throw new IllegalArgumentException("invalid board size " + rows + "x" + columns);
+    if (mines <= 0 || mines >= rows * columns)
+      throw new IllegalArgumentException("invalid mines number " + mines + " for board " + rows + "x" + columns);
+    this.rows = rows;
+    this.columns = columns;
+    this.mines = mines;
+  }
+
+  /**
+   * Returns the size of the given difficulty.
+   */
+  public static BoardSize of(Difficulty difficulty) {
+    return new BoardSize(difficulty.getRows(), difficulty.getColumns(), difficulty.getMines());
+  }
+
+  /**
+   * Parses a board size from its key.
+   * 
+   * @param key a difficulty name or a size formatted as {@code <rows>x<columns>:<mines>}
+   * @return the board size
+   * @throws IllegalArgumentException if the key is invalid
+   * @see #getKey()
+   */
+  public static BoardSize parse(String key) {
+    for (Difficulty difficulty : Difficulty.values()) {
+      if (difficulty.name().equalsIgnoreCase(key))
+        return of(difficulty);
+    }
+    String[] parts = key.split("[x:]");
+    if (parts.length != 3)
+      throw new IllegalArgumentException("invalid board size " + key);
+    return new BoardSize(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+  }
+
+  public int getRows() {
+    return this.rows;
+  }
+
+  public int getColumns() {
+    return this.columns;
+  }
+
+  public int getMines() {
+    return this.mines;
+  }
+
+  /**
+   * Returns the number of cells.
+   */
+  public int getCells() {
+    return this.rows * this.columns;
+  }
+
+  /**
+   * Returns the difficulty with this size, if any.
+   */
+  public Optional<Difficulty> getDifficulty() {
+    for (Difficulty difficulty : Difficulty.values()) {
+      if (difficulty.getRows() == this.rows && difficulty.getColumns() == this.columns && difficulty.getMines() == this.mines)
+        return Optional.of(difficulty);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the key identifying this size in files: the difficulty's name in lower case for
+   * presets, {@code <rows>x<columns>:<mines>} otherwise.
+   * 
+   * @see #parse(String)
+   */
+  public String getKey() {
+    Optional<Difficulty> difficulty = getDifficulty();
+    if (difficulty.isPresent())
+      return difficulty.get().name().toLowerCase();
+    return this.rows + "x" + this.columns + ":" + this.mines;
+  }
+
+  /**
+   * Returns the localized name of this size.
+   */
+  public String getName() {
+    Optional<Difficulty> difficulty = getDifficulty();
+    if (difficulty.isPresent())
+      return difficulty.get().getName();
+    return String.format(I18n.getLocalizedString("difficulty.custom"), this.rows, this.columns, this.mines);
+  }
+
+  /**
+   * Orders sizes by number of cells, then number of mines, then number of rows.
+   */
+  @Override
+  public int compareTo(BoardSize o) {
+    int c = Integer.compare(getCells(), o.getCells());
+    if (c == 0)
+      c = Integer.compare(this.mines, o.mines);
+    if (c == 0)
+      c = Integer.compare(this.rows, o.rows);
+    return c;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof BoardSize))
+      return false;
+    BoardSize b = (BoardSize) o;
+    return this.rows == b.rows && this.columns == b.columns && this.mines == b.mines;
+  }
+
+  @Override
+  public int hashCode() {
+    return (this.rows * 31 + this.columns) * 31 + this.mines;
+  }
+
+  @Override
+  public String toString() {
+    return getKey();
+  }
+}
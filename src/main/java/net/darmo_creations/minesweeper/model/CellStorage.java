@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Storage of one byte per cell of a minefield, addressed by a {@code long} index. The rules of
+ * {@link AbstractMinefield} only access the cells through this interface, whether they live on the
+ * heap or in a file.
+ *
+ * @author Damien Vergnet
+ */
+interface CellStorage {
+  /**
+   * Returns the value of the given cell as an unsigned byte.
+   * 
+   * @param cell the cell's index
+   */
+  int get(long cell);
+
+  /**
+   * Sets the value of the given cell. Only the lower 8 bits are kept.
+   * 
+   * @param cell the cell's index
+   * @param value the new value
+   */
+  void set(long cell, int value);
+
+  /**
+   * Writes the values of all the cells to the given channel, in order.
+   * 
+   * @param channel the channel
+   * @throws IOException if an I/O error occurs
+   */
+  void write(WritableByteChannel channel) throws IOException;
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.util.Arrays;
+
+/**
+ * A change set lists all the cells whose tile changed after an action along with their new
+ * tiles. Cells are stored as indices into two parallel primitive arrays. Change sets of grids
+ * without bounds store the rows in a third array instead.
+ * <p>
+ * Change sets are never modified once returned by the grid, so they can be safely handed over to
+ * another thread.
+ *
+ * @author Damien Vergnet
+ */
+public final class ChangeSet {
+  private final int columns;
+  /** Rows of the cells for grids without bounds, null if {@link #cells} holds indices. */
+  private int[] rows;
+  private int[] cells;
+  private byte[] tiles;
+  private int size;
+  private int result;
+  private int remainingFlags;
+  private long revealedCells;
+
+  ChangeSet(int columns) {
+    this.columns = columns;
+    this.cells = new int[16];
+    this.tiles = new byte[16];
+    this.size = 0;
+  }
+
+  /**
+   * Creates a change set for a grid without bounds. Cells have to be added with
+   * {@link #add(int, int, byte)}.
+   */
+  ChangeSet() {
+    this(0);
+    this.rows = new int[this.cells.length];
+  }
+
+  /**
+   * Returns the number of changed cells.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the row of the i-th changed cell.
+   */
+  public int getRow(int i) {
+    return this.rows != null ? this.rows[checkIndex(i)] : getCell(i) / this.columns;
+  }
+
+  /**
+   * Returns the column of the i-th changed cell.
+   */
+  public int getColumn(int i) {
+    return this.rows != null ? getCell(i) : getCell(i) % this.columns;
+  }
+
+  /**
+   * Returns the new tile of the i-th changed cell.
+   * 
+   * @see Tile
+   */
+  public byte getTile(int i) {
+    return this.tiles[checkIndex(i)];
+  }
+
+  /**
+   * Returns the result of the action: {@link Grid#WIN}, {@link Grid#LOST} or 0 if the game is
+   * still running.
+   */
+  public int getResult() {
+    return this.result;
+  }
+
+  /**
+   * Returns the remaining number of flags after the action. Always 0 for grids without bounds as
+   * they have no limit on flags.
+   */
+  public int getRemainingFlags() {
+    return this.remainingFlags;
+  }
+
+  /**
+   * Returns the total number of revealed cells without mines after the action.
+   */
+  public long getRevealedCells() {
+    return this.revealedCells;
+  }
+
+  private int getCell(int i) {
+    return this.cells[checkIndex(i)];
+  }
+
+  private int checkIndex(int i) {
+    if (i < 0 || i >= this.size)
+      throw new IndexOutOfBoundsException("index " + i + ", size " + this.size);
+    return i;
+  }
+
+  void add(int cell, byte tile) {
+    if (this.size == this.cells.length) {
+      this.cells = Arrays.copyOf(this.cells, this.size * 2);
+      this.tiles = Arrays.copyOf(this.tiles, this.size * 2);
+      if (this.rows != null)
+        this.rows = Arrays.copyOf(this.rows, this.size * 2);
+    }
+    this.cells[this.size] = cell;
+    this.tiles[this.size] = tile;
+    this.size++;
+  }
+
+  void add(int row, int col, byte tile) {
+    add(col, tile);
+    this.rows[this.size - 1] = row;
+  }
+
+  void setResult(int result) {
+    this.result = result;
+  }
+
+  void setRemainingFlags(int remainingFlags) {
+    this.remainingFlags = remainingFlags;
+  }
+
+  void setRevealedCells(long revealedCells) {
+    this.revealedCells = revealedCells;
+  }
+}
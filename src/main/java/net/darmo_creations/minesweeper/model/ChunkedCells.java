@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Cells of an {@link EndlessGrid}, grouped into square chunks of {@value EndlessGrid#CHUNK_SIZE}
+ * cells. A cell's index holds its row in the upper 32 bits and its column in the lower ones, see
+ * {@link #index(int, int)}.
+ * <p>
+ * The mines of a chunk are placed by a random generator seeded from a hash of the game's seed and
+ * the chunk's coordinates, with the same number of mines in each chunk. They are only generated
+ * when one of the chunk's cells is first needed and can be dropped then regenerated identically at
+ * any time, see {@link #evict(int, int)}. The packed state of the cells, numbers of nearby mines
+ * included, is only stored once a cell of the chunk is modified; until then it is computed from the
+ * mines.
+ *
+ * @author Damien Vergnet
+ */
+final class ChunkedCells implements CellStorage {
+  private static final int CHUNK_SIZE = EndlessGrid.CHUNK_SIZE;
+  private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  /** Chunks within this distance of the played cell, in chunks, are never evicted. */
+  private static final int EVICTION_RADIUS = 8;
+  /** Number of chunks whose mines are loaded above which eviction starts. */
+  private static final int MIN_LOADED_CHUNKS = 1024;
+
+  private final int minesPerChunk;
+  private final Map<Long, Chunk> chunks;
+  /** Last chunk accessed, most accesses hit the same chunk as the previous one. */
+  private Chunk lastChunk;
+  private long lastKey;
+  /** Number of chunks whose mines are loaded. */
+  private int loadedChunks;
+  private int evictionThreshold;
+  /** Buffer for the shuffle of the cells of a chunk. */
+  private final int[] shuffle;
+  private long seed;
+  private int startRow, startColumn;
+  /** Radius of the area around the start cell that never contains mines. */
+  private int safeRadius;
+
+  /**
+   * Creates a storage without any chunk. {@link #setMines(long, int, int, int)} has to be called
+   * before accessing the cells.
+   * 
+   * @param minesPerChunk the number of mines in each chunk
+   */
+  ChunkedCells(int minesPerChunk) {
+    this.minesPerChunk = minesPerChunk;
+    this.chunks = new HashMap<>();
+    this.evictionThreshold = MIN_LOADED_CHUNKS;
+    this.shuffle = new int[CHUNK_SIZE * CHUNK_SIZE];
+  }
+
+  /**
+   * Sets the parameters of the mines generation.
+   * 
+   * @param seed the game's seed
+   * @param startRow the row of the first clicked cell
+   * @param startColumn the column of the first clicked cell
+   * @param safeRadius radius of the area around the start cell that never contains mines
+   */
+  void setMines(long seed, int startRow, int startColumn, int safeRadius) {
+    this.seed = seed;
+    this.startRow = startRow;
+    this.startColumn = startColumn;
+    this.safeRadius = safeRadius;
+  }
+
+  /**
+   * Returns the index of the cell at the given coordinates.
+   */
+  static long index(int row, int col) {
+    return (long) row << 32 | (col & 0xffffffffL);
+  }
+
+  /**
+   * Returns the row of the given cell.
+   */
+  static int row(long cell) {
+    return (int) (cell >> 32);
+  }
+
+  /**
+   * Returns the column of the given cell.
+   */
+  static int column(long cell) {
+    return (int) cell;
+  }
+
+  /**
+   * Returns the number of chunks currently in memory.
+   */
+  int getChunksNumber() {
+    return this.chunks.size();
+  }
+
+  /**
+   * Tells whether the state of the given cell is stored, i.e. a cell of its chunk was modified.
+   */
+  boolean isStored(int row, int col) {
+    Chunk chunk = this.chunks.get(EndlessGrid.chunkKey(row, col));
+    return chunk != null && chunk.state != null;
+  }
+
+  /**
+   * Passes the index of every stored cell to the given action.
+   */
+  void forEachStored(Consumer<Long> action) {
+    for (Map.Entry<Long, Chunk> entry : this.chunks.entrySet()) {
+      Chunk chunk = entry.getValue();
+      if (chunk.state == null)
+        continue;
+      int firstRow = chunk.row << CHUNK_SHIFT, firstCol = chunk.column << CHUNK_SHIFT;
+
+      for (int i = 0; i < CHUNK_SIZE * CHUNK_SIZE; i++)
+        action.accept(index(firstRow + (i >> CHUNK_SHIFT), firstCol + (i & CHUNK_MASK)));
+    }
+  }
+
+  @Override
+  public int get(long cell) {
+    int row = row(cell), col = column(cell);
+    Chunk chunk = getChunk(row, col);
+
+    if (chunk.state != null)
+      return chunk.state[EndlessGrid.indexInChunk(row, col)] & 0xff;
+    return computeState(row, col);
+  }
+
+  @Override
+  public void set(long cell, int value) {
+    int row = row(cell), col = column(cell);
+    Chunk chunk = getChunk(row, col);
+
+    if (chunk.state == null)
+      store(chunk);
+    chunk.state[EndlessGrid.indexInChunk(row, col)] = (byte) value;
+  }
+
+  /**
+   * Not supported, the grid has no bounds.
+   * 
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void write(WritableByteChannel channel) {
+    throw new UnsupportedOperationException("endless grids cannot be written");
+  }
+
+  /**
+   * Drops the mines of the chunks farther than {@link #EVICTION_RADIUS} from the given cell if too
+   * many chunks are loaded. Chunks without stored cells are removed altogether.
+   */
+  void evict(int row, int col) {
+    if (this.loadedChunks <= this.evictionThreshold)
+      return;
+
+    int chunkRow = row >> CHUNK_SHIFT, chunkCol = col >> CHUNK_SHIFT;
+    Iterator<Map.Entry<Long, Chunk>> it = this.chunks.entrySet().iterator();
+
+    while (it.hasNext()) {
+      Chunk chunk = it.next().getValue();
+
+      if (Math.max(Math.abs(chunk.row - chunkRow), Math.abs(chunk.column - chunkCol)) > EVICTION_RADIUS) {
+        if (chunk.mines != null) {
+          chunk.mines = null;
+          this.loadedChunks--;
+        }
+        if (chunk.state == null)
+          it.remove();
+      }
+    }
+    this.lastChunk = null;
+    // Amortizes the cost of the scans when a big area is being played.
+    this.evictionThreshold = Math.max(MIN_LOADED_CHUNKS, 2 * this.loadedChunks);
+  }
+
+  /**
+   * Computes the packed state of a cell that was never modified: its mine and number of nearby
+   * mines.
+   */
+  private int computeState(int row, int col) {
+    int nearbyMines = 0;
+    for (int r = row - 1; r <= row + 1; r++) {
+      for (int c = col - 1; c <= col + 1; c++) {
+        if ((r != row || c != col) && isMine(r, c))
+          nearbyMines++;
+      }
+    }
+    return (isMine(row, col) ? AbstractMinefield.MINE : 0) | nearbyMines << AbstractMinefield.NEARBY_MINES_SHIFT;
+  }
+
+  /**
+   * Allocates the state of the cells of the given chunk, computed from the mines. The mines of the
+   * chunk and of the cells around it are gathered into one bit mask per row first, the numbers of
+   * nearby mines are then counted on the masks.
+   */
+  private void store(Chunk chunk) {
+    byte[] state = new byte[CHUNK_SIZE * CHUNK_SIZE];
+    int firstRow = chunk.row << CHUNK_SHIFT, firstCol = chunk.column << CHUNK_SHIFT;
+    // Bit j + 1 of rows[i + 1] tells whether cell (i, j) of the chunk is a mine, i and j going from
+    // -1 to CHUNK_SIZE.
+    long[] rows = new long[CHUNK_SIZE + 2];
+
+    for (int i = 0; i < rows.length;) {
+      int row = firstRow + i - 1;
+      int[] left = getMines(row, firstCol - 1), middle = getMines(row, firstCol), right = getMines(row, firstCol + CHUNK_SIZE);
+      // Rows of the same chunks are gathered together.
+      do {
+        int r = (firstRow + i - 1) & CHUNK_MASK;
+        rows[i] = (middle[r] & 0xffffffffL) << 1 | left[r] >>> CHUNK_MASK & 1 | (long) (right[r] & 1) << (CHUNK_SIZE + 1);
+        i++;
+      } while (i < rows.length && ((firstRow + i - 1) & CHUNK_MASK) != 0);
+    }
+    for (int i = 0; i < CHUNK_SIZE; i++) {
+      long above = rows[i], row = rows[i + 1], below = rows[i + 2];
+      for (int j = 0; j < CHUNK_SIZE; j++) {
+        int nearbyMines = Long.bitCount(above >>> j & 7) + Long.bitCount(row >>> j & 5) + Long.bitCount(below >>> j & 7);
+        int mine = (int) (row >>> (j + 1)) & 1;
+        state[i << CHUNK_SHIFT | j] = (byte) (mine | nearbyMines << AbstractMinefield.NEARBY_MINES_SHIFT);
+      }
+    }
+    chunk.state = state;
+  }
+
+  private boolean isMine(int row, int col) {
+    return (getMines(row, col)[row & CHUNK_MASK] >>> (col & CHUNK_MASK) & 1) != 0;
+  }
+
+  /**
+   * Returns the mines of the chunk containing the given cell, generating them if needed.
+   */
+  private int[] getMines(int row, int col) {
+    Chunk chunk = getChunk(row, col);
+    if (chunk.mines == null)
+      generateChunk(chunk);
+    return chunk.mines;
+  }
+
+  /**
+   * Returns the chunk containing the given cell, creating it if needed. Its mines may not be loaded.
+   */
+  private Chunk getChunk(int row, int col) {
+    long key = EndlessGrid.chunkKey(row, col);
+
+    if (this.lastChunk == null || key != this.lastKey) {
+      Chunk chunk = this.chunks.get(key);
+      if (chunk == null)
+        this.chunks.put(key, chunk = new Chunk(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT));
+      this.lastChunk = chunk;
+      this.lastKey = key;
+    }
+    return this.lastChunk;
+  }
+
+  /**
+   * Places the mines of a chunk using a partial Fisher-Yates shuffle of its cells. Mines falling into
+   * the safe area around the start cell are dropped.
+   */
+  private void generateChunk(Chunk chunk) {
+    int chunkRow = chunk.row, chunkCol = chunk.column;
+    SplittableRandom rand = new SplittableRandom(mix(this.seed ^ mix(((long) chunkRow << 32) ^ (chunkCol & 0xffffffffL))));
+    int cellsNb = this.shuffle.length;
+
+    chunk.mines = new int[CHUNK_SIZE];
+    for (int i = 0; i < cellsNb; i++)
+      this.shuffle[i] = i;
+    for (int i = 0; i < this.minesPerChunk; i++) {
+      int j = i + rand.nextInt(cellsNb - i);
+      int cell = this.shuffle[j];
+      this.shuffle[j] = this.shuffle[i];
+      this.shuffle[i] = cell;
+
+      int r = cell >> CHUNK_SHIFT, c = cell & CHUNK_MASK;
+      int row = (chunkRow << CHUNK_SHIFT) + r, col = (chunkCol << CHUNK_SHIFT) + c;
+      if (Math.abs((long) row - this.startRow) > this.safeRadius || Math.abs((long) col - this.startColumn) > this.safeRadius)
+        chunk.mines[r] |= 1 << c;
+    }
+    this.loadedChunks++;
+  }
+
+  /**
+   * 64-bit finalizer of MurmurHash3.
+   */
+  static long mix(long z) {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return z ^ (z >>> 33);
+  }
+
+  /**
+   * A chunk of the grid.
+   */
+  private static final class Chunk {
+    final int row, column;
+    /** Mines of each row of the chunk, one bit per column; null if not loaded. */
+    int[] mines;
+    /** Packed state of each cell, null until one of them is modified. */
+    byte[] state;
+
+    Chunk(int row, int column) {
+      this.row = row;
+      this.column = column;
+    }
+  }
+}
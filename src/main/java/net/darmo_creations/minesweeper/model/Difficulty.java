@@ -26,19 +26,19 @@ import net.darmo_creations.utils.I18n;
  * @author Damien Vergnet
  */
 public enum Difficulty {
-  EASY(9, 9, 10, I18n.getLocalizedString("difficulty.easy")),
-  NORMAL(16, 16, 40, I18n.getLocalizedString("difficulty.normal")),
-  HARD(32, 16, 100, I18n.getLocalizedString("difficulty.hard")),
-  EXPERT(32, 32, 200, I18n.getLocalizedString("difficulty.expert"));
+  EASY(9, 9, 10, "difficulty.easy"),
+  NORMAL(16, 16, 40, "difficulty.normal"),
+  HARD(32, 16, 100, "difficulty.hard"),
+  EXPERT(32, 32, 200, "difficulty.expert");
 
   private int columns, rows, mines;
-  private String name;
+  private String unlocalizedName;
 
-  private Difficulty(int cols, int rows, int mines, String name) {
+  private Difficulty(int cols, int rows, int mines, String unlocalizedName) {
     this.columns = cols;
     this.rows = rows;
     this.mines = mines;
-    this.name = name;
+    this.unlocalizedName = unlocalizedName;
   }
 
   /**
@@ -66,6 +66,6 @@ public enum Difficulty {
    * Difficulty's localized name.
    */
   public String getName() {
-    return this.name;
+    return I18n.getLocalizedString(this.unlocalizedName);
   }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.util.function.Consumer;
+
+/**
+ * A grid without edges. Cells are grouped into square chunks of {@value #CHUNK_SIZE} cells.
+ * <p>
+ * The mines of a chunk are placed by a random generator seeded from a hash of the game's seed and
+ * the chunk's coordinates, with the same number of mines in each chunk. A chunk's mines are thus
+ * only generated when one of its cells is first needed and can be dropped then regenerated
+ * identically at any time: after each action, the mines of the chunks far from the played cell are
+ * evicted once too many chunks are loaded. The state of the cells (clicked, flagged, marked) is
+ * only stored for the chunks the player touched.
+ * <p>
+ * The rules are those of {@link AbstractMinefield}, played on {@link ChunkedCells}. The game is
+ * lost as soon as a mine is clicked and can never be won. The density of mines is kept high enough
+ * for flood fills to always stop: below about 13%, empty cells would form infinite regions.
+ *
+ * @author Damien Vergnet
+ */
+public class EndlessGrid extends AbstractMinefield {
+  /** Number of rows and columns of a chunk. */
+  public static final int CHUNK_SIZE = 32;
+  public static final double MIN_DENSITY = 0.15;
+  public static final double MAX_DENSITY = 0.5;
+  /** Same density as the expert difficulty. */
+  public static final double DEFAULT_DENSITY = 0.2;
+
+  private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final ChunkedCells chunkedCells;
+
+  /**
+   * Creates a grid. Mines have to be generated by calling
+   * {@link #generateMines(int, int, long, boolean)} before playing.
+   * 
+   * @param density proportion of cells containing a mine
+   */
+  public EndlessGrid(double density) {
+    this(new ChunkedCells(getMinesPerChunk(density)));
+  }
+
+  private EndlessGrid(ChunkedCells cells) {
+    // The outermost rows and columns are left out so that their neighbors do not overflow.
+    super(cells, null, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1, Long.MAX_VALUE);
+    this.chunkedCells = cells;
+  }
+
+  /**
+   * Checks the density then returns the number of mines per chunk.
+   * 
+   * @throws IllegalArgumentException if the density is out of range
+   */
+  private static int getMinesPerChunk(double density) {
+    if (density < MIN_DENSITY || density > MAX_DENSITY)
+      throw new IllegalArgumentException("invalid density " + density);
+    return (int) Math.round(density * CHUNK_SIZE * CHUNK_SIZE);
+  }
+
+  /**
+   * Returns the key of the chunk containing the given cell. Keys are hashed so that chunks on the
+   * same diagonal do not collide in hash maps.
+   */
+  public static long chunkKey(int row, int col) {
+    return ChunkedCells.mix(((long) (row >> CHUNK_SHIFT) << 32) | ((col >> CHUNK_SHIFT) & 0xffffffffL));
+  }
+
+  /**
+   * Returns the index of the given cell inside its chunk, in row-major order.
+   */
+  public static int indexInChunk(int row, int col) {
+    return (row & CHUNK_MASK) << CHUNK_SHIFT | (col & CHUNK_MASK);
+  }
+
+  /**
+   * Returns the number of chunks currently in memory.
+   */
+  public int getChunksNumber() {
+    return this.chunkedCells.getChunksNumber();
+  }
+
+  /**
+   * Always 0, there is no limit on flags.
+   */
+  @Override
+  public int getRemainingFlags() {
+    return 0;
+  }
+
+  @Override
+  public byte getTile(int row, int col) {
+    // Cells of untouched chunks are hidden, no need to generate their mines.
+    if (!this.chunkedCells.isStored(row, col))
+      return Tile.HIDDEN;
+    return super.getTile(row, col);
+  }
+
+  /**
+   * Only stores the seed and the start cell: mines are generated chunk by chunk when needed.
+   */
+  @Override
+  public void generateMines(int clickedRow, int clickedCol, long seed, boolean safeOpening) {
+    if (this.generated)
+      throw new IllegalStateException("mines already generated");
+    this.chunkedCells.setMines(seed, clickedRow, clickedCol, safeOpening ? 1 : 0);
+    this.seed = seed;
+    this.generated = true;
+  }
+
+  /**
+   * Performs an action on a cell then evicts the mines of the chunks far from it if too many are
+   * loaded.
+   */
+  @Override
+  public ChangeSet play(int row, int col, Action action, Consumer<ChangeSet> sink, int batchSize) {
+    ChangeSet changes = super.play(row, col, action, sink, batchSize);
+    this.chunkedCells.evict(row, col);
+    return changes;
+  }
+
+  /**
+   * Reveals the mines and wrongly flagged cells of all the chunks the player touched.
+   */
+  @Override
+  public ChangeSet endGame() {
+    ChangeSet changes = newChangeSet();
+
+    this.chunkedCells.forEachStored(cell -> addEndTile(cell, changes));
+    changes.setResult(this.result);
+    setCounters(changes);
+
+    return changes;
+  }
+
+  @Override
+  long index(int row, int col) {
+    return ChunkedCells.index(row, col);
+  }
+
+  @Override
+  int rowOf(long cell) {
+    return ChunkedCells.row(cell);
+  }
+
+  @Override
+  int columnOf(long cell) {
+    return ChunkedCells.column(cell);
+  }
+}
@@ -1,274 +1,307 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
 package net.darmo_creations.minesweeper.model;
 
-import java.awt.Color;
-import java.awt.Point;
-import java.util.Random;
-
-import net.darmo_creations.minesweeper.Images;
-import net.darmo_creations.minesweeper.events.CellClickedEvent;
-import net.darmo_creations.minesweeper.gui.MainFrame.CellLabel;
-
-public class Grid {
-  private Cell[][] grid;
-  /** Remaining number of flags. */
-  private int flags;
-  private int minesNb;
-  private CellLabelProvider cellLabelProvider;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.SplittableRandom;
 
+/**
+ * The game grid. The state of every cell is packed into a single byte and all cells are stored in
+ * one row-major array, the lower 4 bits holding the mine/clicked/flagged/marked flags and the upper
+ * 4 bits the number of nearby mines, computed once when mines are generated. The number of
+ * flags around each cell is kept in a separate table, updated whenever a flag is put or removed.
+ * <p>
+ * The grid does not depend on any user interface: actions are performed through
+ * {@link #play(int, int, Action)} and every cell whose appearance changed is reported in the
+ * returned {@link ChangeSet}. The rules are those of {@link AbstractMinefield}, {@link MappedGrid}
+ * plays them on cells stored in a file instead.
+ *
+ * @author Damien Vergnet
+ */
+public class Grid extends AbstractMinefield {
   public static final int WIN = 1;
   public static final int LOST = -1;
 
-  public Grid(Difficulty difficulty, CellLabelProvider cellLabelProvider) {
-    this.grid = new Cell[difficulty.getRows()][difficulty.getColumns()];
-    this.minesNb = difficulty.getMines();
-    this.flags = this.minesNb;
-    for (int row = 0; row < difficulty.getRows(); row++) {
-      for (int col = 0; col < difficulty.getColumns(); col++) {
-        this.grid[row][col] = new Cell(row, col);
-      }
-    }
-    this.cellLabelProvider = cellLabelProvider;
-  }
+  private final int rows, columns;
+  private final long cellsNb;
+  private final int minesNb;
+  /** Tells whether cell indices fit in an int, change sets then store them directly. */
+  private final boolean intIndices;
 
-  public int getRemainingFlags() {
-    return this.flags;
+  /**
+   * Creates a grid for the given difficulty.
+   * 
+   * @param difficulty the difficulty
+   */
+  public Grid(Difficulty difficulty) {
+    this(difficulty.getRows(), difficulty.getColumns(), difficulty.getMines());
   }
 
-  public int getRows() {
-    return this.grid.length;
+  /**
+   * Creates a grid with the given size.
+   * 
+   * @param size the board size
+   */
+  public Grid(BoardSize size) {
+    this(size.getRows(), size.getColumns(), size.getMines());
   }
 
-  public int getColumns() {
-    return this.grid[0].length;
+  /**
+   * Creates a grid. Mines have to be generated by calling
+   * {@link #generateMines(int, int, long, boolean)} before playing. The cells are stored in a
+   * single array, hence at most {@link Integer#MAX_VALUE} cells; bigger boards have to use a
+   * {@link MappedGrid}.
+   * 
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param mines number of mines
+   * @throws IllegalArgumentException if the size or the number of mines is invalid or the grid
+   *           has too many cells
+   */
+  public Grid(int rows, int columns, int mines) {
+    this(rows, columns, mines, new HeapCells(getArraySize(rows, columns, mines)), new HeapCells(rows * columns));
   }
 
-  public void generateMines(int clickedRow, int clickedCol) {
-    Random rand = new Random();
-    for (int i = 0; i < this.minesNb; i++) {
-      int col, row;
-      do {
-        col = rand.nextInt(getColumns());
-        row = rand.nextInt(getRows());
-      } while (this.grid[row][col].isMine() || row == clickedRow && col == clickedCol);
-
-      this.grid[row][col].setMine(true);
-    }
+  /**
+   * Creates a grid on the given storage. The size must have been checked with
+   * {@link #checkSize(int, int, int)}.
+   * 
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param mines number of mines
+   * @param cells the cells
+   * @param nearbyFlags the table of nearby flags, null to count them when needed
+   */
+  Grid(int rows, int columns, int mines, CellStorage cells, CellStorage nearbyFlags) {
+    super(cells, nearbyFlags, 0, rows - 1, 0, columns - 1, (long) rows * columns - mines);
+    this.rows = rows;
+    this.columns = columns;
+    this.cellsNb = (long) rows * columns;
+    this.minesNb = mines;
+    this.intIndices = this.cellsNb <= Integer.MAX_VALUE;
+    this.flags = mines;
   }
 
-  public int performMainClick(CellClickedEvent event) {
-    Point p = event.getCell().getCoordinates();
-    int col = p.x, row = p.y;
-    Cell cell = this.grid[row][col];
-
-    if (!cell.isFlagged()) {
-      int nearbyMines = getNearbyMinesNumber(row, col);
+  /**
+   * Checks the size and number of mines of a grid.
+   * 
+   * @throws IllegalArgumentException if the size or the number of mines is invalid
+   */
+  static void checkSize(int rows, int columns, int mines) {
+    if (rows <= 0 || columns <= 0)
+      throw new IllegalArgumentException("invalid grid size " + rows + "x" + columns);
+    if (mines < 0 || mines > (long) rows * columns - 1)
+      throw new IllegalArgumentException("invalid mines number " + mines + " for grid " + rows + "x" + columns);
+  }
 
-      if (cell.isClicked() && getNearbyFlagsNumber(row, col) == nearbyMines) {
-        return exploreNeighbors(row, col);
-      }
-      else {
-        return click(cell, event.getCell(), row, col, nearbyMines);
-      }
-    }
-    return 0;
+  /**
+   * Checks the size and number of mines of a grid stored on the heap then returns its number of
+   * cells.
+   * 
+   * @throws IllegalArgumentException if the size or the number of mines is invalid or the grid
+   *           has too many cells
+   */
+  private static int getArraySize(int rows, int columns, int mines) {
+    checkSize(rows, columns, mines);
+    if ((long) rows * columns > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("grid " + rows + "x" + columns + " too big, use a MappedGrid");
+    return rows * columns;
   }
 
-  private int click(Cell cell, CellLabel label, int row, int col, int nearbyMines) {
-    switch (cell.click(nearbyMines)) {
-      case Cell.NOTHING:
-        label.click();
-        label.setBackground(new Color(150, 150, 150));
-        label.setIcon(Images.NUMBERS[nearbyMines]);
-        if (nearbyMines == 0)
-          exploreGrid(row, col, true);
-        if (checkVictory()) {
-          return WIN;
-        }
-        break;
-      case Cell.MINE:
-        label.click();
-        label.setBackground(Color.RED);
-        label.setIcon(Images.MINE);
-        return LOST;
-    }
-    return 0;
+  public int getRows() {
+    return this.rows;
   }
 
-  private int exploreNeighbors(int row, int col) {
-    boolean mine = false;
-    if (row > 0)
-      mine = exploreGrid(row - 1, col, false);
-    if (!mine && row > 0 && col < getColumns() - 1)
-      mine = exploreGrid(row - 1, col + 1, false);
-    if (!mine && col < getColumns() - 1)
-      mine = exploreGrid(row, col + 1, false);
-    if (!mine && row < getRows() - 1 && col < getColumns() - 1)
-      mine = exploreGrid(row + 1, col + 1, false);
-    if (!mine && row < getRows() - 1)
-      mine = exploreGrid(row + 1, col, false);
-    if (!mine && row < getRows() - 1 && col > 0)
-      mine = exploreGrid(row + 1, col - 1, false);
-    if (!mine && col > 0)
-      mine = exploreGrid(row, col - 1, false);
-    if (!mine && row > 0 && col > 0)
-      mine = exploreGrid(row - 1, col - 1, false);
-
-    if (mine) {
-      return LOST;
-    }
-    else if (checkVictory()) {
-      return WIN;
-    }
-    return 0;
+  public int getColumns() {
+    return this.columns;
   }
 
-  public void performSecondaryClick(CellClickedEvent event) {
-    Point p = event.getCell().getCoordinates();
-    int col = p.x, row = p.y;
-    Cell cell = this.grid[row][col];
-    CellLabel label = event.getCell();
-
-    if (!cell.isClicked()) {
-      if (cell.isFlagged()) {
-        cell.setMarked(true);
-        label.setIcon(Images.MARK);
-        this.flags++;
-      }
-      else if (cell.isMarked()) {
-        cell.setMarked(false);
-        label.setIcon(Images.EMPTY_CELL);
-      }
-      else {
-        cell.setFlagged(true);
-        label.setIcon(Images.FLAG);
-        this.flags--;
-      }
-    }
+  /**
+   * Returns the total number of mines.
+   */
+  public int getMinesNumber() {
+    return this.minesNb;
   }
 
   /**
-   * Explores all the non-clicked cells from the given starting cell that don't have any mines
-   * nearby.
-   * 
-   * @param row the starting row
-   * @param col the starting column
-   * @param ignoreCenter if true, the center cell (the one that was clicked) will be ignored
-   * @return true if the cell at the coordinates was a mine
+   * Places the mines in a single pass over the cells using selection sampling: each cell gets a mine
+   * with a probability equal to the number of mines left to place divided by the number of
+   * candidate cells left. No memory is needed besides the cells, even for the biggest boards, and
+   * the cells are written sequentially. The same seed and clicked cell will always give the same
+   * grid.
+   *
+   * @param clickedRow the row of the first clicked cell
+   * @param clickedCol the column of the first clicked cell
+   * @param seed the seed for the random generator
+   * @param safeOpening if true, the 8 cells around the clicked one will not contain any mines
+   *          either, unless there are too many mines to fit in the rest of the grid
    */
-  private boolean exploreGrid(int row, int col, boolean ignoreCenter) {
-    Cell cell = this.grid[row][col];
+  @Override
+  public void generateMines(int clickedRow, int clickedCol, long seed, boolean safeOpening) {
+    if (this.generated)
+      throw new IllegalStateException("mines already generated");
+    checkCoordinates(clickedRow, clickedCol);
 
-    if ((!ignoreCenter && cell.isClicked()) || cell.isFlagged())
-      return false;
+    SplittableRandom rand = new SplittableRandom(seed);
+    int radius = safeOpening && this.minesNb <= this.cellsNb - 9 ? 1 : 0;
+    long safeCells = (long) (Math.min(clickedRow + radius, this.rows - 1) - Math.max(clickedRow - radius, 0) + 1)
+        * (Math.min(clickedCol + radius, this.columns - 1) - Math.max(clickedCol - radius, 0) + 1);
+    long candidates = this.cellsNb - safeCells;
+    int remaining = this.minesNb;
 
-    if (!ignoreCenter) {
-      int mines = getNearbyMinesNumber(row, col);
-      int result = cell.click(mines);
-      if (result == Cell.MINE) {
-        return true;
+    for (int row = 0; row < this.rows && remaining > 0; row++) {
+      boolean safeRow = Math.abs(row - clickedRow) <= radius;
+      for (int col = 0; col < this.columns && remaining > 0; col++) {
+        if (safeRow && Math.abs(col - clickedCol) <= radius)
+          continue;
+        if (rand.nextLong(candidates) < remaining) {
+          long cell = index(row, col);
+          this.cells.set(cell, this.cells.get(cell) | MINE);
+          incrementNearbyMines(cell);
+          remaining--;
+        }
+        candidates--;
       }
-      CellLabel label = this.cellLabelProvider.getLabel(row, col);
-      label.click();
-      label.setBackground(new Color(150, 150, 150));
-      label.setIcon(Images.NUMBERS[mines]);
     }
 
-    if (getNearbyMinesNumber(row, col) == 0) {
-      if (row > 0)
-        exploreGrid(row - 1, col, false);
-      if (row > 0 && col < getColumns() - 1)
-        exploreGrid(row - 1, col + 1, false);
-      if (col < getColumns() - 1)
-        exploreGrid(row, col + 1, false);
-      if (row < getRows() - 1 && col < getColumns() - 1)
-        exploreGrid(row + 1, col + 1, false);
-      if (row < getRows() - 1)
-        exploreGrid(row + 1, col, false);
-      if (row < getRows() - 1 && col > 0)
-        exploreGrid(row + 1, col - 1, false);
-      if (col > 0)
-        exploreGrid(row, col - 1, false);
-      if (row > 0 && col > 0)
-        exploreGrid(row - 1, col - 1, false);
-    }
-    return false;
+    this.seed = seed;
+    this.generated = true;
   }
 
-  public void endGame() {
-    for (int row = 0; row < getRows(); row++) {
-      for (int col = 0; col < getColumns(); col++) {
-        Cell cell = this.grid[row][col];
-        CellLabel label = this.cellLabelProvider.getLabel(row, col);
-
-        label.lock();
-        if (cell.isMine()) {
-          label.setIcon(Images.MINE);
-        }
-        else if (!cell.isMine() && cell.isFlagged()) {
-          label.setIcon(Images.WRONG_MINE);
-        }
-      }
-    }
+  /**
+   * Writes the state of every cell to the given channel, one byte per cell in the grid's own
+   * packed form. The mines must have been generated.
+   * 
+   * @param channel the channel
+   * @throws IOException if an I/O error occurs
+   */
+  public void writeCells(WritableByteChannel channel) throws IOException {
+    this.cells.write(channel);
   }
 
   /**
-   * Returns {@code true} if the only remaining cells contain mines; false otherwise.
+   * Restores a grid from cells written by {@link #writeCells(WritableByteChannel)}. The cells are
+   * read directly into the grid, only the flags have to be looked for to rebuild the numbers of
+   * nearby flags.
+   * 
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param mines number of mines
+   * @param seed the seed the mines were generated with
+   * @param channel the channel to read the cells from
+   * @return the grid
+   * @throws IOException if an I/O error occurs or the cells do not match the grid
    */
-  private boolean checkVictory() {
-    boolean win = true;
-
-    loop: for (int row = 0; row < getRows(); row++) {
-      for (int col = 0; col < getColumns(); col++) {
-        if (!this.grid[row][col].isClicked() && !this.grid[row][col].isMine()) {
-          win = false;
-          break loop;
-        }
+  public static Grid readCells(int rows, int columns, int mines, long seed, ReadableByteChannel channel) throws IOException {
+    HeapCells cells;
+    try {
+      cells = new HeapCells(getArraySize(rows, columns, mines));
+    }
+    catch (IllegalArgumentException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+    cells.read(channel);
+    Grid grid = new Grid(rows, columns, mines, cells, new HeapCells(rows * columns));
+
+    int minesNb = 0, flags = 0, revealedCells = 0, exploded = 0;
+    for (int cell = 0; cell < rows * columns; cell++) {
+      int state = cells.get(cell);
+
+      minesNb += state & MINE;
+      revealedCells += (state & (MINE | CLICKED)) == CLICKED ? 1 : 0;
+      exploded |= state & state >> 1 & MINE;
+      if ((state & FLAGGED) != 0) {
+        flags++;
+        grid.updateNearbyFlags(cell, 1);
       }
     }
+    if (minesNb != mines)
+      throw new IOException("expected " + mines + " mines, got " + minesNb);
 
-    return win;
+    grid.seed = seed;
+    grid.generated = true;
+    grid.flags = mines - flags;
+    grid.revealedCells = revealedCells;
+    grid.result = exploded != 0 ? LOST : revealedCells == grid.cellsNb - mines ? WIN : 0;
+
+    return grid;
   }
 
   /**
-   * Returns the number of mines in the 8 adjacent cells to the one at the specified coordinates.
-   * 
-   * @param row the row
-   * @param col the column
+   * Returns the tiles of all the cells as seen by the player, in row-major order.
    * 
-   * @return the number of nearby mines
+   * @throws ArithmeticException if the grid has more than {@link Integer#MAX_VALUE} cells
    */
-  private int getNearbyMinesNumber(int row, int col) {
-    return (row > 0 ? booleanToInt(this.grid[row - 1][col].isMine()) : 0) + //
-        (col < this.grid[0].length - 1 && row > 0 ? booleanToInt(this.grid[row - 1][col + 1].isMine()) : 0) + //
-        (col < this.grid[0].length - 1 ? booleanToInt(this.grid[row][col + 1].isMine()) : 0) + //
-        (col < this.grid[0].length - 1 && row < this.grid.length - 1 ? booleanToInt(this.grid[row + 1][col + 1].isMine()) : 0) + //
-        (row < this.grid.length - 1 ? booleanToInt(this.grid[row + 1][col].isMine()) : 0) + //
-        (col > 0 && row < this.grid.length - 1 ? booleanToInt(this.grid[row + 1][col - 1].isMine()) : 0) + //
-        (col > 0 ? booleanToInt(this.grid[row][col - 1].isMine()) : 0) + //
-        (col > 0 && row > 0 ? booleanToInt(this.grid[row - 1][col - 1].isMine()) : 0);
+  public byte[] getTiles() {
+    byte[] tiles = new byte[Math.toIntExact(this.cellsNb)];
+
+    for (int cell = 0; cell < tiles.length; cell++) {
+      tiles[cell] = getTile(cell);
+    }
+    return tiles;
   }
 
   /**
-   * Returns the number of flagged cells in the 8 adjacent cells to the one at the specified
-   * coordinates.
-   * 
-   * @param row the row
-   * @param col the column
+   * Reveals all the mines and wrongly flagged cells. Should be called once the game is over.
    * 
-   * @return the number of nearby flagged cells
+   * @return the changed cells
    */
-  private int getNearbyFlagsNumber(int row, int col) {
-    return (row > 0 ? booleanToInt(this.grid[row - 1][col].isFlagged()) : 0) + //
-        (col < this.grid[0].length - 1 && row > 0 ? booleanToInt(this.grid[row - 1][col + 1].isFlagged()) : 0) + //
-        (col < this.grid[0].length - 1 ? booleanToInt(this.grid[row][col + 1].isFlagged()) : 0) + //
-        (col < this.grid[0].length - 1 && row < this.grid.length - 1 ? booleanToInt(this.grid[row + 1][col + 1].isFlagged()) : 0) + //
-        (row < this.grid.length - 1 ? booleanToInt(this.grid[row + 1][col].isFlagged()) : 0) + //
-        (col > 0 && row < this.grid.length - 1 ? booleanToInt(this.grid[row + 1][col - 1].isFlagged()) : 0) + //
-        (col > 0 ? booleanToInt(this.grid[row][col - 1].isFlagged()) : 0) + //
-        (col > 0 && row > 0 ? booleanToInt(this.grid[row - 1][col - 1].isFlagged()) : 0);
+  @Override
+  public ChangeSet endGame() {
+    ChangeSet changes = newChangeSet();
+
+    for (long cell = 0; cell < this.cellsNb; cell++) {
+      addEndTile(cell, changes);
+    }
+    changes.setResult(this.result);
+    setCounters(changes);
+
+    return changes;
+  }
+
+  @Override
+  long index(int row, int col) {
+    return (long) row * this.columns + col;
+  }
+
+  @Override
+  int rowOf(long cell) {
+    return this.intIndices ? (int) cell / this.columns : (int) (cell / this.columns);
+  }
+
+  @Override
+  int columnOf(long cell) {
+    return this.intIndices ? (int) cell % this.columns : (int) (cell % this.columns);
+  }
+
+  @Override
+  ChangeSet newChangeSet() {
+    return this.intIndices ? new ChangeSet(this.columns) : new ChangeSet();
   }
 
-  private int booleanToInt(boolean value) {
-    return value ? 1 : 0;
+  @Override
+  void addChange(ChangeSet changes, long cell, byte tile) {
+    if (this.intIndices)
+      changes.add((int) cell, tile);
+    else
+      changes.add(rowOf(cell), columnOf(cell), tile);
   }
 }
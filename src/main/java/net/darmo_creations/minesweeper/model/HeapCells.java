@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Cells stored in a single array on the heap.
+ *
+ * @author Damien Vergnet
+ */
+final class HeapCells implements CellStorage {
+  private final byte[] values;
+
+  /**
+   * Creates a storage with all cells set to 0.
+   * 
+   * @param size the number of cells
+   */
+  HeapCells(int size) {
+    this.values = new byte[size];
+  }
+
+  @Override
+  public int get(long cell) {
+    return this.values[(int) cell] & 0xff;
+  }
+
+  @Override
+  public void set(long cell, int value) {
+    this.values[(int) cell] = (byte) value;
+  }
+
+  @Override
+  public void write(WritableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(this.values);
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+
+  /**
+   * Reads the values of all the cells from the given channel, directly into the array.
+   * 
+   * @param channel the channel
+   * @throws IOException if an I/O error occurs or the channel does not have enough bytes
+   */
+  void read(ReadableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(this.values);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0)
+        throw new IOException("missing cells");
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints.
+ *
+ * @author Damien Vergnet
+ */
+public final class IntList {
+  private int[] values;
+  private int size;
+
+  public IntList() {
+    this(16);
+  }
+
+  public IntList(int capacity) {
+    this.values = new int[Math.max(capacity, 1)];
+    this.size = 0;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  public int get(int i) {
+    if (i >= this.size)
+      throw new IndexOutOfBoundsException("index " + i + ", size " + this.size);
+    return this.values[i];
+  }
+
+  public void add(int value) {
+    if (this.size == this.values.length)
+      this.values = Arrays.copyOf(this.values, this.values.length * 2);
+    this.values[this.size++] = value;
+  }
+
+  /**
+   * Removes the last value and returns it.
+   */
+  public int removeLast() {
+    if (this.size == 0)
+      throw new IndexOutOfBoundsException("empty list");
+    return this.values[--this.size];
+  }
+
+  public void clear() {
+    this.size = 0;
+  }
+}
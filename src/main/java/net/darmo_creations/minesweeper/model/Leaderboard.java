@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * Scores of a difficulty, ranked from best to worst. Scores are kept in an order-statistic treap
+ * (a binary search tree balanced by random priorities, where each node knows the size of its
+ * subtree), hence insertion, access by rank and rank queries all take O(log n) on average. Players'
+ * best scores and numbers of scores are indexed by username.
+ *
+ * @author Damien Vergnet
+ */
+public final class Leaderboard {
+  private final SplittableRandom random;
+  private final Map<String, Player> players;
+  private Node root;
+
+  /**
+   * Creates an empty leaderboard.
+   */
+  public Leaderboard() {
+    this.random = new SplittableRandom();
+    this.players = new HashMap<>();
+  }
+
+  /**
+   * Creates a leaderboard containing the given scores. The tree is built balanced in O(n log n)
+   * instead of inserting scores one by one.
+   */
+  public Leaderboard(Collection<Score> scores) {
+    this();
+    Score[] sorted = scores.toArray(new Score[scores.size()]);
+    Arrays.sort(sorted);
+    this.root = build(sorted, 0, sorted.length);
+
+    // Assigns priorities in breadth-first order so that parents always get higher ones.
+    int[] priorities = this.random.ints(sorted.length).sorted().toArray();
+    Deque<Node> queue = new ArrayDeque<>();
+    int i = priorities.length;
+    if (this.root != null)
+      queue.add(this.root);
+    while (!queue.isEmpty()) {
+      Node node = queue.poll();
+      node.priority = priorities[--i];
+      if (node.left != null)
+        queue.add(node.left);
+      if (node.right != null)
+        queue.add(node.right);
+    }
+
+    for (Score score : sorted) {
+      addToPlayer(score);
+    }
+  }
+
+  private static Node build(Score[] sorted, int from, int to) {
+    if (from >= to)
+      return null;
+    int middle = (from + to) >>> 1;
+    Node node = new Node(sorted[middle], 0);
+    node.left = build(sorted, from, middle);
+    node.right = build(sorted, middle + 1, to);
+    node.updateSize();
+    return node;
+  }
+
+  /**
+   * Returns the number of scores.
+   */
+  public int size() {
+    return this.root == null ? 0 : this.root.size;
+  }
+
+  /**
+   * Adds a score.
+   * 
+   * @param score the score
+   */
+  public void add(Score score) {
+    this.root = insert(this.root, new Node(score, this.random.nextInt()));
+    addToPlayer(score);
+  }
+
+  private void addToPlayer(Score score) {
+    Player player = this.players.get(score.getUsername());
+    if (player == null)
+      this.players.put(score.getUsername(), new Player(score));
+    else
+      player.add(score);
+  }
+
+  /**
+   * Returns the score at the given rank.
+   * 
+   * @param index the rank, starting at 0 for the best score
+   * @return the score
+   */
+  public Score get(int index) {
+    if (index < 0 || index >= size())
+      throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+
+    Node node = this.root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      }
+      else if (index == leftSize) {
+        return node.score;
+      }
+      else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /**
+   * Returns the rank the given score has or would have in this leaderboard, i.e. the number of
+   * scores strictly better than it.
+   * 
+   * @param score the score
+   * @return the rank, starting at 0
+   */
+  public int getRank(Score score) {
+    int rank = 0;
+    Node node = this.root;
+
+    while (node != null) {
+      if (score.compareTo(node.score) <= 0) {
+        node = node.left;
+      }
+      else {
+        rank += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return rank;
+  }
+
+  /**
+   * Returns the best scores.
+   * 
+   * @param k the maximum number of scores to return
+   * @return at most k scores, from best to worst
+   */
+  public List<Score> getTop(int k) {
+    List<Score> top = new ArrayList<>(Math.min(k, size()));
+    Deque<Node> stack = new ArrayDeque<>();
+    Node node = this.root;
+
+    while (top.size() < k && (node != null || !stack.isEmpty())) {
+      while (node != null) {
+        stack.push(node);
+        node = node.left;
+      }
+      node = stack.pop();
+      top.add(node.score);
+      node = node.right;
+    }
+    return Collections.unmodifiableList(top);
+  }
+
+  /**
+   * Returns the statistics of a player.
+   * 
+   * @param username the player's name
+   * @return the statistics or nothing if the player has no scores
+   */
+  public Optional<Player> getPlayer(String username) {
+    return Optional.ofNullable(this.players.get(username));
+  }
+
+  private static Node insert(Node tree, Node node) {
+    if (tree == null)
+      return node;
+
+    if (node.score.compareTo(tree.score) < 0) {
+      tree.left = insert(tree.left, node);
+      if (tree.left.priority > tree.priority)
+        tree = rotateRight(tree);
+    }
+    else {
+      tree.right = insert(tree.right, node);
+      if (tree.right.priority > tree.priority)
+        tree = rotateLeft(tree);
+    }
+    tree.updateSize();
+    return tree;
+  }
+
+  private static Node rotateRight(Node node) {
+    Node left = node.left;
+    node.left = left.right;
+    node.updateSize();
+    left.right = node;
+    left.updateSize();
+    return left;
+  }
+
+  private static Node rotateLeft(Node node) {
+    Node right = node.right;
+    node.right = right.left;
+    node.updateSize();
+    right.left = node;
+    right.updateSize();
+    return right;
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static final class Node {
+    final Score score;
+    int priority;
+    int size;
+    Node left, right;
+
+    Node(Score score, int priority) {
+      this.score = score;
+      this.priority = priority;
+      this.size = 1;
+    }
+
+    void updateSize() {
+      this.size = 1 + size(this.left) + size(this.right);
+    }
+  }
+
+  /**
+   * Statistics of a player in a leaderboard.
+   */
+  public static final class Player {
+    private Score best;
+    private int scoresNumber;
+
+    private Player(Score score) {
+      this.best = score;
+      this.scoresNumber = 1;
+    }
+
+    private void add(Score score) {
+      if (score.compareTo(this.best) < 0)
+        this.best = score;
+      this.scoresNumber++;
+    }
+
+    /**
+     * Returns the best score of this player.
+     */
+    public Score getBest() {
+      return this.best;
+    }
+
+    /**
+     * Returns the number of scores of this player.
+     */
+    public int getScoresNumber() {
+      return this.scoresNumber;
+    }
+  }
+}
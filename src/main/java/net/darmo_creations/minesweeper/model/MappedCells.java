@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Cells stored in a memory-mapped file. The file is mapped by segments of {@value #SEGMENT_SIZE}
+ * bytes, hence more than {@link Integer#MAX_VALUE} cells can be stored.
+ *
+ * @author Damien Vergnet
+ */
+final class MappedCells implements CellStorage {
+  private static final int SEGMENT_SHIFT = 30;
+  private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+  private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private final MappedByteBuffer[] segments;
+
+  /**
+   * Maps the cells of a file. The file is extended if needed, the new bytes are zeros.
+   * 
+   * @param channel the file's channel, opened for reading and writing
+   * @param offset position of the first cell in the file
+   * @param size the number of cells
+   * @throws IOException if the file could not be mapped
+   */
+  MappedCells(FileChannel channel, long offset, long size) throws IOException {
+    this.segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+    for (int i = 0; i < this.segments.length; i++) {
+      long position = (long) i << SEGMENT_SHIFT;
+      this.segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset + position, Math.min(SEGMENT_SIZE, size - position));
+    }
+  }
+
+  @Override
+  public int get(long cell) {
+    return this.segments[(int) (cell >>> SEGMENT_SHIFT)].get((int) (cell & SEGMENT_MASK)) & 0xff;
+  }
+
+  @Override
+  public void set(long cell, int value) {
+    this.segments[(int) (cell >>> SEGMENT_SHIFT)].put((int) (cell & SEGMENT_MASK), (byte) value);
+  }
+
+  @Override
+  public void write(WritableByteChannel channel) throws IOException {
+    for (MappedByteBuffer segment : this.segments) {
+      ByteBuffer buffer = segment.duplicate();
+      buffer.clear();
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    }
+  }
+
+  /**
+   * Writes all the changes to the disk.
+   */
+  void force() {
+    for (MappedByteBuffer segment : this.segments)
+      segment.force();
+  }
+}
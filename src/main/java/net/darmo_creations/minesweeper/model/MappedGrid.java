@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * A grid stored in a memory-mapped file instead of the heap, for boards too big to fit in memory.
+ * Cells are packed the same way as in {@link Grid}, one byte per cell, after a small header holding
+ * the game's state. The operating system's page cache decides which parts of the board stay in
+ * memory and a game can be reopened with {@link #open(Path)} without reading the whole file.
+ * <p>
+ * Only the storage differs from {@link Grid}, the rules are the same. Cells are addressed with
+ * {@code long} indices, so a grid can have up to {@link Integer#MAX_VALUE} rows and columns.
+ * Unlike {@link Grid}, the number of flags around a cell is not cached but counted when needed.
+ * <p>
+ * The header is updated after each action. Changes reach the disk when the operating system writes
+ * the pages back, or on {@link #force()} and {@link #close()}.
+ *
+ * @author Damien Vergnet
+ */
+public class MappedGrid extends Grid implements Closeable {
+  private static final long MAGIC = 0x4d5357504752494eL;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 64;
+
+  // Header fields offsets
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int ROWS_OFFSET = 12;
+  private static final int COLUMNS_OFFSET = 16;
+  private static final int MINES_OFFSET = 20;
+  private static final int FLAGS_OFFSET = 24;
+  private static final int RESULT_OFFSET = 28;
+  private static final int GENERATED_OFFSET = 32;
+  private static final int SEED_OFFSET = 40;
+  private static final int HIDDEN_SAFE_CELLS_OFFSET = 48;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final MappedCells mappedCells;
+  private final long safeCells;
+
+  /**
+   * Creates a new grid in the given file, replacing it if it exists. Mines have to be generated by
+   * calling {@link #generateMines(int, int, long, boolean)} before playing.
+   * 
+   * @param file the file
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param mines number of mines
+   * @return the grid
+   * @throws IOException if the file could not be created
+   */
+  public static MappedGrid create(Path file, int rows, int columns, int mines) throws IOException {
+    checkSize(rows, columns, mines);
+
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      header.putLong(MAGIC_OFFSET, MAGIC);
+      header.putInt(VERSION_OFFSET, VERSION);
+      header.putInt(ROWS_OFFSET, rows);
+      header.putInt(COLUMNS_OFFSET, columns);
+      header.putInt(MINES_OFFSET, mines);
+      header.putInt(FLAGS_OFFSET, mines);
+      header.putLong(HIDDEN_SAFE_CELLS_OFFSET, (long) rows * columns - mines);
+      // Mapping the cells extends the file, the new bytes are zeros: hidden cells without mines.
+      return new MappedGrid(channel, header, new MappedCells(channel, HEADER_SIZE, (long) rows * columns));
+    }
+    catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Opens a grid previously created by {@link #create(Path, int, int, int)}. The game resumes in
+   * the state it was left.
+   * 
+   * @param file the file
+   * @return the grid
+   * @throws IOException if the file could not be opened or is not a grid
+   */
+  public static MappedGrid open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      if (channel.size() < HEADER_SIZE)
+        throw new IOException("not a grid file: " + file);
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      if (header.getLong(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+        throw new IOException("not a grid file: " + file);
+      int rows = header.getInt(ROWS_OFFSET), columns = header.getInt(COLUMNS_OFFSET);
+      try {
+        checkSize(rows, columns, header.getInt(MINES_OFFSET));
+      }
+      catch (IllegalArgumentException ex) {
+        throw new IOException("not a grid file: " + file, ex);
+      }
+      long size = (long) rows * columns;
+      if (channel.size() != HEADER_SIZE + size)
+        throw new IOException("truncated grid file: " + file);
+      return new MappedGrid(channel, header, new MappedCells(channel, HEADER_SIZE, size));
+    }
+    catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private MappedGrid(FileChannel channel, MappedByteBuffer header, MappedCells cells) {
+    super(header.getInt(ROWS_OFFSET), header.getInt(COLUMNS_OFFSET), header.getInt(MINES_OFFSET), cells, null);
+    this.channel = channel;
+    this.header = header;
+    this.mappedCells = cells;
+    this.safeCells = (long) getRows() * getColumns() - getMinesNumber();
+    this.flags = header.getInt(FLAGS_OFFSET);
+    this.result = header.getInt(RESULT_OFFSET);
+    this.generated = header.get(GENERATED_OFFSET) != 0;
+    this.seed = header.getLong(SEED_OFFSET);
+    this.revealedCells = this.safeCells - header.getLong(HIDDEN_SAFE_CELLS_OFFSET);
+  }
+
+  @Override
+  public void generateMines(int clickedRow, int clickedCol, long seed, boolean safeOpening) {
+    super.generateMines(clickedRow, clickedCol, seed, safeOpening);
+    saveHeader();
+  }
+
+  @Override
+  public ChangeSet play(int row, int col, Action action, Consumer<ChangeSet> sink, int batchSize) {
+    try {
+      return super.play(row, col, action, sink, batchSize);
+    }
+    finally {
+      saveHeader();
+    }
+  }
+
+  /**
+   * Writes all the changes to the disk.
+   * 
+   * @throws IOException if an I/O error occurs
+   */
+  public void force() throws IOException {
+    this.header.force();
+    this.mappedCells.force();
+  }
+
+  /**
+   * Writes all the changes to the disk and closes the file. The mapping itself is only released
+   * once the grid is garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      force();
+    }
+    finally {
+      this.channel.close();
+    }
+  }
+
+  private void saveHeader() {
+    this.header.putInt(FLAGS_OFFSET, this.flags);
+    this.header.putInt(RESULT_OFFSET, this.result);
+    this.header.put(GENERATED_OFFSET, (byte) (this.generated ? 1 : 0));
+    this.header.putLong(SEED_OFFSET, this.seed);
+    this.header.putLong(HIDDEN_SAFE_CELLS_OFFSET, this.safeCells - this.revealedCells);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+import java.util.function.Consumer;
+
+/**
+ * A board actions can be played on: the bounded {@link Grid} or the {@link EndlessGrid}.
+ *
+ * @author Damien Vergnet
+ */
+public interface Minefield {
+  /**
+   * Tells whether the mines have been generated.
+   */
+  boolean areMinesGenerated();
+
+  /**
+   * Generates the mines. Must be called once, before the first action.
+   *
+   * @param clickedRow the row of the first clicked cell
+   * @param clickedCol the column of the first clicked cell
+   * @param seed the seed for the random generator
+   * @param safeOpening if true, the 8 cells around the clicked one will not contain any mines
+   *          either
+   */
+  void generateMines(int clickedRow, int clickedCol, long seed, boolean safeOpening);
+
+  /**
+   * Returns the seed used to generate the mines.
+   */
+  long getSeed();
+
+  /**
+   * Returns {@link Grid#WIN} or {@link Grid#LOST} if the game is over, 0 otherwise.
+   */
+  int getResult();
+
+  /**
+   * Returns the tile of the given cell as seen by the player.
+   * 
+   * @param row the row
+   * @param col the column
+   * @see Tile
+   */
+  byte getTile(int row, int col);
+
+  /**
+   * Performs an action on a cell.
+   * 
+   * @param row the cell's row
+   * @param col the cell's column
+   * @param action the action
+   * @return the cells whose tile changed and the result of the action
+   */
+  default ChangeSet play(int row, int col, Action action) {
+    return play(row, col, action, null, 0);
+  }
+
+  /**
+   * Performs an action on a cell. Cells revealed by a flood fill are sent to the given sink in
+   * batches while the exploration goes on; the returned change set only contains the remaining
+   * cells. Applying all the partial change sets followed by the returned one gives the same result
+   * as {@link #play(int, int, Action)}.
+   * 
+   * @param row the cell's row
+   * @param col the cell's column
+   * @param action the action
+   * @param sink receives the partial change sets, in order; may be null
+   * @param batchSize number of revealed cells per partial change set
+   * @return the remaining cells whose tile changed and the result of the action
+   */
+  ChangeSet play(int row, int col, Action action, Consumer<ChangeSet> sink, int batchSize);
+
+  /**
+   * Reveals all the mines and wrongly flagged cells. Should be called once the game is over.
+   * 
+   * @return the changed cells
+   */
+  ChangeSet endGame();
+}
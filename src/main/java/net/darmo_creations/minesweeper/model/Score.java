@@ -19,19 +19,31 @@
 package net.darmo_creations.minesweeper.model;
 
 import java.time.Duration;
+import java.time.Instant;
 
 /**
- * A score is a duration associated to a username.
+ * A score is a duration associated to a username and the date it was achieved. Scores are ranked
+ * by duration, at millisecond resolution. Ties are broken by date, the oldest score first, then by
+ * username so that the order is always the same.
  *
  * @author Damien Vergnet
  */
 public final class Score implements Comparable<Score> {
   private final String username;
   private final Duration duration;
+  private final Instant date;
 
-  public Score(String username, Duration duration) {
+  /**
+   * Creates a score.
+   * 
+   * @param username the player's name
+   * @param duration the time taken to win
+   * @param date when the game was won; {@link Instant#EPOCH} if unknown
+   */
+  public Score(String username, Duration duration, Instant date) {
     this.username = username;
     this.duration = Duration.from(duration);
+    this.date = date;
   }
 
   public String getUsername() {
@@ -42,13 +54,22 @@ public final class Score implements Comparable<Score> {
     return this.duration;
   }
 
+  public Instant getDate() {
+    return this.date;
+  }
+
   @Override
   public int compareTo(Score otherScore) {
-    return this.duration.compareTo(otherScore.getDuration());
+    int c = this.duration.compareTo(otherScore.getDuration());
+    if (c == 0)
+      c = this.date.compareTo(otherScore.getDate());
+    if (c == 0)
+      c = this.username.compareTo(otherScore.getUsername());
+    return c;
   }
 
   @Override
   public String toString() {
-    return this.username + "=" + this.duration;
+    return this.username + "=" + this.duration + "@" + this.date;
   }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.model;
+
+/**
+ * This class defines how a cell looks to the player. Values 0 through 8 are revealed cells and
+ * correspond to the number of nearby mines.
+ *
+ * @author Damien Vergnet
+ */
+public final class Tile {
+  /** Non-revealed cell. */
+  public static final byte HIDDEN = 9;
+  /** Flagged cell. */
+  public static final byte FLAG = 10;
+  /** Cell marked with a question mark. */
+  public static final byte MARK = 11;
+  /** Mine shown at the end of the game. */
+  public static final byte MINE = 12;
+  /** Mine that has been clicked. */
+  public static final byte EXPLODED_MINE = 13;
+  /** Flag that was put on a cell without any mine, shown at the end of the game. */
+  public static final byte WRONG_FLAG = 14;
+
+  /** Number of different tiles. */
+  public static final int COUNT = 15;
+
+  /**
+   * Tells whether the given tile is a revealed cell, i.e. one that shows a number of nearby mines.
+   */
+  public static boolean isRevealed(byte tile) {
+    return tile >= 0 && tile <= 8;
+  }
+
+  private Tile() {}
+}
@@ -18,29 +18,108 @@
  */
 package net.darmo_creations.minesweeper.model;
 
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import net.darmo_creations.gui_framework.ApplicationRegistry;
 import net.darmo_creations.minesweeper.events.TimerEvent;
 
-public class Timer extends Thread {
-  @Override
-  public void run() {
-    long startTime = System.currentTimeMillis();
-
-    while (!currentThread().isInterrupted()) {
-      GregorianCalendar cal = new GregorianCalendar();
-
-      cal.setTimeInMillis(System.currentTimeMillis() - startTime);
-      ApplicationRegistry.EVENTS_BUS.dispatchEvent(
-          new TimerEvent(cal.get(Calendar.HOUR_OF_DAY) - 1, cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND)));
-      try {
-        Thread.sleep(500);
-      }
-      catch (InterruptedException ex) {
-        return;
-      }
+/**
+ * Game timer. Elapsed time is measured with {@link System#nanoTime()} and is not affected by
+ * changes of the system clock. While running, the timer fires a {@link TimerEvent} at a fixed rate
+ * so that the display can be updated; all timers share a single scheduler thread.
+ *
+ * @author Damien Vergnet
+ */
+public class Timer {
+  /** Lowest accepted tick rate. */
+  public static final int MIN_TICK_RATE = 1;
+  /** Highest accepted tick rate, the display does not need more. */
+  public static final int MAX_TICK_RATE = 1000;
+
+  private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "Timer");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private final long tickPeriod;
+  /** Time accumulated before the last start/resume, in nanoseconds. */
+  private long elapsed;
+  /** Value of {@link System#nanoTime()} when the timer was last started/resumed. */
+  private long resumeTime;
+  private boolean running;
+  private ScheduledFuture<?> ticks;
+
+  /**
+   * Creates a stopped timer.
+   * 
+   * @param ticksPerSecond number of events fired per second while running, between
+   *          {@link #MIN_TICK_RATE} and {@link #MAX_TICK_RATE}
+   */
+  public Timer(int ticksPerSecond) {
+    this(ticksPerSecond, 0);
+  }
+
+  /**
+   * Creates a stopped timer that already counted some time.
+   * 
+   * @param ticksPerSecond number of events fired per second while running, between
+   *          {@link #MIN_TICK_RATE} and {@link #MAX_TICK_RATE}
+   * @param elapsedMillis the initial elapsed time in milliseconds
+   */
+  public Timer(int ticksPerSecond, long elapsedMillis) {
+    if (ticksPerSecond < MIN_TICK_RATE || ticksPerSecond > MAX_TICK_RATE)
+      throw new IllegalArgumentException("invalid tick rate " + ticksPerSecond);
+    if (elapsedMillis < 0)
+      throw new IllegalArgumentException("negative elapsed time " + elapsedMillis);
+    this.tickPeriod = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+    this.elapsed = TimeUnit.MILLISECONDS.toNanos(elapsedMillis);
+  }
+
+  /**
+   * Starts or resumes the timer. Does nothing if it is already running.
+   */
+  public synchronized void start() {
+    if (!this.running) {
+      this.running = true;
+      this.resumeTime = System.nanoTime();
+      this.ticks = SCHEDULER.scheduleAtFixedRate(this::tick, 0, this.tickPeriod, TimeUnit.NANOSECONDS);
     }
   }
+
+  /**
+   * Pauses the timer. Does nothing if it is not running.
+   */
+  public synchronized void pause() {
+    if (this.running) {
+      this.elapsed += System.nanoTime() - this.resumeTime;
+      this.running = false;
+      this.ticks.cancel(false);
+      this.ticks = null;
+    }
+  }
+
+  /**
+   * Tells whether the timer is running.
+   */
+  public synchronized boolean isRunning() {
+    return this.running;
+  }
+
+  /**
+   * Returns the elapsed time in milliseconds, not counting the time spent paused.
+   */
+  public synchronized long getElapsedMillis() {
+    long elapsed = this.elapsed;
+    if (this.running)
+      elapsed += System.nanoTime() - this.resumeTime;
+    return TimeUnit.NANOSECONDS.toMillis(elapsed);
+  }
+
+  private void tick() {
+    ApplicationRegistry.EVENTS_BUS.dispatchEvent(new TimerEvent(this, getElapsedMillis()));
+  }
 }
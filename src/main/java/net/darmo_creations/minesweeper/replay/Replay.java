@@ -0,0 +1,381 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.minesweeper.model.EndlessGrid;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.Minefield;
+
+/**
+ * The recording of a game: the board, the seed of its mines and every action with its time.
+ * Replays are created by a {@link ReplayRecorder}, played back headlessly by a {@link ReplayPlayer}
+ * and animated by the main controller.
+ * <p>
+ * The binary format is made of a header followed by the moves. Integers are stored as varints (7
+ * bits per byte, least significant group first) and moves are delta-encoded against the previous
+ * one, so that a typical move fits in 3 bytes:
+ * 
+ * <pre>
+ * header: "MSRP" version:varint mode:byte
+ *         board mode:   rows:varint columns:varint mines:varint
+ *         endless mode: density:8 bytes
+ *         seed:8 bytes safeOpening:byte moves:varint
+ * move:   (timeDelta &lt;&lt; 1 | secondary):varint rowDelta:zigzag varint columnDelta:zigzag varint
+ * </pre>
+ * 
+ * Chords are main clicks on revealed cells, they are stored as such.
+ *
+ * @author Damien Vergnet
+ */
+public final class Replay {
+  public static final String EXTENSION = "replay";
+
+  private static final byte[] MAGIC = {'M', 'S', 'R', 'P'};
+  /** Version 2: the mines of bounded boards are placed by selection sampling. */
+  private static final int VERSION = 2;
+  private static final byte BOARD_MODE = 0;
+  private static final byte ENDLESS_MODE = 1;
+
+  /** The board size, null in endless mode. */
+  private final BoardSize size;
+  private final double density;
+  private final long seed;
+  private final boolean safeOpening;
+  private final int movesNb;
+  private final long[] times;
+  private final int[] rows;
+  private final int[] columns;
+  private final boolean[] secondary;
+
+  /**
+   * Creates a replay. The arrays are not copied.
+   */
+  Replay(BoardSize size, double density, long seed, boolean safeOpening, int movesNb, long[] times, int[] rows, int[] columns,
+      boolean[] secondary) {
+    this.size = size;
+    this.density = density;
+    this.seed = seed;
+    this.safeOpening = safeOpening;
+    this.movesNb = movesNb;
+    this.times = times;
+    this.rows = rows;
+    this.columns = columns;
+    this.secondary = secondary;
+  }
+
+  /**
+   * Returns the board size or an empty optional in endless mode.
+   */
+  public Optional<BoardSize> getSize() {
+    return Optional.ofNullable(this.size);
+  }
+
+  public boolean isEndless() {
+    return this.size == null;
+  }
+
+  /**
+   * Returns the density of mines in endless mode.
+   */
+  public double getDensity() {
+    return this.density;
+  }
+
+  public long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * Tells whether the cells around the first one were free of mines.
+   */
+  public boolean isSafeOpening() {
+    return this.safeOpening;
+  }
+
+  public int getMovesNumber() {
+    return this.movesNb;
+  }
+
+  /**
+   * Returns the time of a move in milliseconds since the start of the game.
+   * 
+   * @param i the move's index
+   */
+  public long getTime(int i) {
+    return this.times[checkIndex(i)];
+  }
+
+  public int getRow(int i) {
+    return this.rows[checkIndex(i)];
+  }
+
+  public int getColumn(int i) {
+    return this.columns[checkIndex(i)];
+  }
+
+  public Action getAction(int i) {
+    return this.secondary[checkIndex(i)] ? Action.SECONDARY_CLICK : Action.MAIN_CLICK;
+  }
+
+  /**
+   * Returns the time of the last move in milliseconds.
+   */
+  public long getDuration() {
+    return this.movesNb > 0 ? this.times[this.movesNb - 1] : 0;
+  }
+
+  private int checkIndex(int i) {
+    if (i < 0 || i >= this.movesNb)
+      throw new IndexOutOfBoundsException("index " + i + ", size " + this.movesNb);
+    return i;
+  }
+
+  /**
+   * Creates the grid of the recorded game. Its mines are generated from the first move, which has
+   * yet to be played.
+   */
+  public Minefield createGrid() {
+    Minefield grid = this.size != null ? new Grid(this.size) : new EndlessGrid(this.density);
+
+    if (this.movesNb > 0)
+      grid.generateMines(this.rows[0], this.columns[0], this.seed, this.safeOpening);
+    return grid;
+  }
+
+  /**
+   * Encodes this replay.
+   */
+  public byte[] encode() {
+    Output out = new Output(32 + 3 * this.movesNb);
+
+    out.write(MAGIC);
+    out.writeVarint(VERSION);
+    if (this.size != null) {
+      out.write(BOARD_MODE);
+      out.writeVarint(this.size.getRows());
+      out.writeVarint(this.size.getColumns());
+      out.writeVarint(this.size.getMines());
+    }
+    else {
+      out.write(ENDLESS_MODE);
+      out.writeLong(Double.doubleToLongBits(this.density));
+    }
+    out.writeLong(this.seed);
+    out.write(this.safeOpening ? 1 : 0);
+    out.writeVarint(this.movesNb);
+
+    long time = 0;
+    int row = 0, col = 0;
+    for (int i = 0; i < this.movesNb; i++) {
+      out.writeVarint((this.times[i] - time) << 1 | (this.secondary[i] ? 1 : 0));
+      out.writeVarint(zigzag(this.rows[i] - row));
+      out.writeVarint(zigzag(this.columns[i] - col));
+      time = this.times[i];
+      row = this.rows[i];
+      col = this.columns[i];
+    }
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes a replay.
+   * 
+   * @param bytes the encoded replay
+   * @return the replay
+   * @throws IOException if the data is not a valid replay
+   */
+  public static Replay decode(byte[] bytes) throws IOException {
+    Input in = new Input(bytes);
+
+    for (byte b : MAGIC) {
+      if (in.read() != b)
+        throw new IOException("not a replay");
+    }
+    int version = (int) in.readVarint();
+    if (version != VERSION)
+      throw new IOException("unsupported replay version " + version);
+
+    BoardSize size = null;
+    double density = 0;
+    byte mode = in.read();
+    if (mode == BOARD_MODE) {
+      int rows = (int) in.readVarint(), columns = (int) in.readVarint(), mines = (int) in.readVarint();
+      try {
+        size = new BoardSize(rows, columns, mines);
+      }
+      catch (IllegalArgumentException ex) {
+        throw new IOException("invalid board size", ex);
+      }
+    }
+    else if (mode == ENDLESS_MODE) {
+      density = Double.longBitsToDouble(in.readLong());
+      if (!(density >= EndlessGrid.MIN_DENSITY && density <= EndlessGrid.MAX_DENSITY))
+        throw new IOException("invalid density " + density);
+    }
+    else {
+      throw new IOException("unknown mode " + mode);
+    }
+    long seed = in.readLong();
+    boolean safeOpening = in.read() != 0;
+    long movesNb = in.readVarint();
+    // Each move takes at least 3 bytes.
+    if (movesNb > in.remaining() / 3)
+      throw new IOException("truncated replay");
+
+    int n = (int) movesNb;
+    long[] times = new long[n];
+    int[] rows = new int[n];
+    int[] columns = new int[n];
+    boolean[] secondary = new boolean[n];
+    long time = 0;
+    int row = 0, col = 0;
+    for (int i = 0; i < n; i++) {
+      long v = in.readVarint();
+      time += v >>> 1;
+      secondary[i] = (v & 1) != 0;
+      row += unzigzag(in.readVarint());
+      col += unzigzag(in.readVarint());
+      if (size != null && (row < 0 || row >= size.getRows() || col < 0 || col >= size.getColumns()))
+        throw new IOException("move " + i + " out of the board");
+      times[i] = time;
+      rows[i] = row;
+      columns[i] = col;
+    }
+
+    return new Replay(size, density, seed, safeOpening, n, times, rows, columns, secondary);
+  }
+
+  /**
+   * Writes this replay to a file.
+   * 
+   * @param file the file
+   * @throws IOException if the file could not be written
+   */
+  public void write(Path file) throws IOException {
+    Files.write(file, encode());
+  }
+
+  /**
+   * Reads a replay from a file.
+   * 
+   * @param file the file
+   * @return the replay
+   * @throws IOException if the file could not be read or is not a valid replay
+   */
+  public static Replay read(Path file) throws IOException {
+    return decode(Files.readAllBytes(file));
+  }
+
+  private static long zigzag(int v) {
+    return (v << 1 ^ v >> 31) & 0xffffffffL;
+  }
+
+  private static int unzigzag(long v) {
+    return (int) (v >>> 1) ^ -(int) (v & 1);
+  }
+
+  /**
+   * A growable byte buffer.
+   */
+  private static final class Output {
+    private byte[] bytes;
+    private int size;
+
+    Output(int capacity) {
+      this.bytes = new byte[capacity];
+    }
+
+    void write(int b) {
+      if (this.size == this.bytes.length)
+        this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+      this.bytes[this.size++] = (byte) b;
+    }
+
+    void write(byte[] b) {
+      for (byte v : b)
+        write(v);
+    }
+
+    void writeVarint(long v) {
+      while ((v & ~0x7fL) != 0) {
+        write((int) (v & 0x7f) | 0x80);
+        v >>>= 7;
+      }
+      write((int) v);
+    }
+
+    void writeLong(long v) {
+      for (int i = 56; i >= 0; i -= 8)
+        write((int) (v >>> i));
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(this.bytes, this.size);
+    }
+  }
+
+  /**
+   * Reads values from an encoded replay.
+   */
+  private static final class Input {
+    private final byte[] bytes;
+    private int pos;
+
+    Input(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    int remaining() {
+      return this.bytes.length - this.pos;
+    }
+
+    byte read() throws IOException {
+      if (this.pos == this.bytes.length)
+        throw new IOException("truncated replay");
+      return this.bytes[this.pos++];
+    }
+
+    long readVarint() throws IOException {
+      long v = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = read();
+        v |= (long) (b & 0x7f) << shift;
+        if (b >= 0)
+          return v;
+      }
+      throw new IOException("malformed varint");
+    }
+
+    long readLong() throws IOException {
+      long v = 0;
+      for (int i = 0; i < 8; i++)
+        v = v << 8 | read() & 0xff;
+      return v;
+    }
+  }
+}
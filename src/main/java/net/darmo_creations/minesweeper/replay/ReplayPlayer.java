@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.replay;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.Minefield;
+
+/**
+ * Plays a replay back on a new grid without any GUI.
+ * <p>
+ * It can also be run from the command line to check a replay file and measure the playback speed:
+ * 
+ * <pre>
+ * --replay FILE [--repeat N]
+ * </pre>
+ *
+ * @author Damien Vergnet
+ */
+public final class ReplayPlayer {
+  private final Replay replay;
+  private final Minefield grid;
+  private int next;
+
+  /**
+   * Creates a player positioned before the first move.
+   * 
+   * @param replay the replay
+   */
+  public ReplayPlayer(Replay replay) {
+    this.replay = replay;
+    this.grid = replay.createGrid();
+  }
+
+  /**
+   * Returns the grid the moves are played on.
+   */
+  public Minefield getGrid() {
+    return this.grid;
+  }
+
+  /**
+   * Returns the index of the next move.
+   */
+  public int getPosition() {
+    return this.next;
+  }
+
+  /**
+   * Tells whether there are moves left to play. There are none once the game is over.
+   */
+  public boolean hasNext() {
+    return this.next < this.replay.getMovesNumber() && this.grid.getResult() == 0;
+  }
+
+  /**
+   * Plays the next move.
+   * 
+   * @return the changes of the move
+   * @throws IllegalStateException if there are no moves left
+   */
+  public ChangeSet step() {
+    if (!hasNext())
+      throw new IllegalStateException("no moves left");
+    int i = this.next++;
+    return this.grid.play(this.replay.getRow(i), this.replay.getColumn(i), this.replay.getAction(i));
+  }
+
+  /**
+   * Plays all the remaining moves.
+   * 
+   * @return the game's result: {@link Grid#WIN}, {@link Grid#LOST} or 0 if the replay stops before
+   *         the end of the game
+   */
+  public int playAll() {
+    while (hasNext())
+      step();
+    return this.grid.getResult();
+  }
+
+  /**
+   * Entry point of the command-line playback.
+   * 
+   * @param args the arguments, see class documentation
+   */
+  public static void main(String[] args) {
+    String file = null;
+    int repeat = 1;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--replay":
+            file = args[++i];
+            break;
+          case "--repeat":
+            repeat = Integer.parseInt(args[++i]);
+            break;
+          default:
+            throw new IllegalArgumentException("unknown argument " + args[i]);
+        }
+      }
+      if (file == null || repeat <= 0)
+        throw new IllegalArgumentException("a file and a positive repeat count are required");
+    }
+    catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+      System.err.println("Invalid arguments: " + ex.getMessage());
+      System.exit(1);
+    }
+
+    try {
+      Replay replay = Replay.read(Paths.get(file));
+      int result = 0;
+      long moves = 0;
+      long start = System.nanoTime();
+
+      for (int i = 0; i < repeat; i++) {
+        ReplayPlayer player = new ReplayPlayer(replay);
+        result = player.playAll();
+        moves += player.getPosition();
+      }
+
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%s moves=%d duration=%.3fs result=%s%n", replay.getSize().map(s -> s.getKey()).orElse("endless"),
+          replay.getMovesNumber(), replay.getDuration() / 1000.0, result == Grid.WIN ? "win" : result == Grid.LOST ? "lost" : "unfinished");
+      System.out.printf("played %d moves in %.3fs moves_per_sec=%.0f%n", moves, seconds, moves / seconds);
+    }
+    catch (IOException ex) {
+      System.err.println("Could not read the replay: " + ex.getMessage());
+      System.exit(1);
+    }
+  }
+}
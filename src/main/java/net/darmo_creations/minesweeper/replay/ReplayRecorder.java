@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.replay;
+
+import java.util.Arrays;
+
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.BoardSize;
+
+/**
+ * Records the moves of a game to create a {@link Replay}.
+ *
+ * @author Damien Vergnet
+ */
+public final class ReplayRecorder {
+  private final BoardSize size;
+  private final double density;
+  private long seed;
+  private boolean safeOpening;
+  private int movesNb;
+  private long[] times;
+  private int[] rows;
+  private int[] columns;
+  private boolean[] secondary;
+
+  /**
+   * Creates a recorder for a game on a board of the given size.
+   * 
+   * @param size the board size
+   */
+  public ReplayRecorder(BoardSize size) {
+    this(size, 0);
+  }
+
+  /**
+   * Creates a recorder for a game on an endless grid.
+   * 
+   * @param density the density of mines
+   */
+  public ReplayRecorder(double density) {
+    this(null, density);
+  }
+
+  /**
+   * Creates a recorder that goes on recording the given replay's game.
+   * 
+   * @param replay the moves recorded so far
+   */
+  public ReplayRecorder(Replay replay) {
+    this(replay.getSize().orElse(null), replay.getDensity());
+    setMines(replay.getSeed(), replay.isSafeOpening());
+    for (int i = 0; i < replay.getMovesNumber(); i++) {
+      add(replay.getTime(i), replay.getRow(i), replay.getColumn(i), replay.getAction(i));
+    }
+  }
+
+  private ReplayRecorder(BoardSize size, double density) {
+    this.size = size;
+    this.density = density;
+    this.times = new long[64];
+    this.rows = new int[64];
+    this.columns = new int[64];
+    this.secondary = new boolean[64];
+  }
+
+  /**
+   * Sets how the mines were generated. Must be called once they are.
+   * 
+   * @param seed the seed
+   * @param safeOpening true if the cells around the first one are free of mines
+   */
+  public void setMines(long seed, boolean safeOpening) {
+    this.seed = seed;
+    this.safeOpening = safeOpening;
+  }
+
+  /**
+   * Records a move.
+   * 
+   * @param time the time of the move in milliseconds; times going back are clamped to the
+   *          previous move's
+   * @param row the cell's row
+   * @param col the cell's column
+   * @param action the action
+   */
+  public void add(long time, int row, int col, Action action) {
+    if (this.movesNb == this.times.length) {
+      int capacity = this.movesNb * 2;
+      this.times = Arrays.copyOf(this.times, capacity);
+      this.rows = Arrays.copyOf(this.rows, capacity);
+      this.columns = Arrays.copyOf(this.columns, capacity);
+      this.secondary = Arrays.copyOf(this.secondary, capacity);
+    }
+    this.times[this.movesNb] = this.movesNb > 0 ? Math.max(time, this.times[this.movesNb - 1]) : Math.max(time, 0);
+    this.rows[this.movesNb] = row;
+    this.columns[this.movesNb] = col;
+    this.secondary[this.movesNb] = action == Action.SECONDARY_CLICK;
+    this.movesNb++;
+  }
+
+  public int getMovesNumber() {
+    return this.movesNb;
+  }
+
+  /**
+   * Returns the replay of the moves recorded so far.
+   */
+  public Replay toReplay() {
+    return new Replay(this.size, this.density, this.seed, this.safeOpening, this.movesNb, Arrays.copyOf(this.times, this.movesNb),
+        Arrays.copyOf(this.rows, this.movesNb), Arrays.copyOf(this.columns, this.movesNb), Arrays.copyOf(this.secondary, this.movesNb));
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Difficulty;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.Tile;
+
+/**
+ * Command-line batch mode that plays many seeded games with a move strategy on all available
+ * cores then prints aggregated statistics. No AWT component is ever created.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * --simulate [--games N] [--difficulty NAME|all] [--size ROWSxCOLUMNS:MINES] [--seed SEED]
+ *            [--threads N] [--strategy NAME] [--safe-opening] [--out FILE]
+ * </pre>
+ * 
+ * Game number {@code i} always uses the same seed for a given base seed, whatever the number of
+ * threads.
+ *
+ * @author Damien Vergnet
+ */
+public class BatchRunner {
+  /** Games are handed over to workers by chunks of this size. */
+  private static final int CHUNK_SIZE = 256;
+
+  private static final Map<String, Supplier<MoveStrategy>> STRATEGIES = new LinkedHashMap<>();
+
+  static {
+    STRATEGIES.put("random", RandomStrategy::new);
+    STRATEGIES.put("solver", SolverStrategy::new);
+    STRATEGIES.put("probability", ProbabilityStrategy::new);
+  }
+
+  private final long games;
+  private final long seed;
+  private final int threads;
+  private final Supplier<MoveStrategy> strategy;
+  private final boolean safeOpening;
+  private final PrintStream out;
+
+  /**
+   * Creates a runner.
+   * 
+   * @param games number of games per board
+   * @param seed the base seed
+   * @param threads number of worker threads
+   * @param strategy the strategy factory, called once per thread
+   * @param safeOpening whether the first click always opens a 3x3 area
+   * @param out where to print the results
+   */
+  public BatchRunner(long games, long seed, int threads, Supplier<MoveStrategy> strategy, boolean safeOpening, PrintStream out) {
+    this.games = games;
+    this.seed = seed;
+    this.threads = threads;
+    this.strategy = strategy;
+    this.safeOpening = safeOpening;
+    this.out = out;
+  }
+
+  /**
+   * Plays all the games for a board then prints the statistics.
+   * 
+   * @param name the board's name
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param mines number of mines
+   * @return the statistics
+   */
+  public GameStatistics run(String name, int rows, int columns, int mines) throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+    AtomicLong nextGame = new AtomicLong();
+    List<Future<GameStatistics>> results = new ArrayList<>();
+    long start = System.nanoTime();
+
+    try {
+      for (int i = 0; i < this.threads; i++) {
+        results.add(executor.submit(() -> {
+          MoveStrategy strategy = this.strategy.get();
+          GameStatistics stats = new GameStatistics();
+          long first;
+
+          while ((first = nextGame.getAndAdd(CHUNK_SIZE)) < this.games) {
+            for (long game = first; game < Math.min(first + CHUNK_SIZE, this.games); game++) {
+              long gameSeed = new SplittableRandom(this.seed + game).nextLong();
+              play(new Grid(rows, columns, mines), strategy, gameSeed, this.safeOpening, stats);
+            }
+          }
+          return stats;
+        }));
+      }
+
+      GameStatistics total = new GameStatistics();
+      for (Future<GameStatistics> result : results)
+        total.merge(result.get());
+
+      double seconds = (System.nanoTime() - start) / 1e9;
+      this.out.printf("%s %dx%d:%d %s time=%.3fs games_per_sec=%.0f%n", name, rows, columns, mines, total, seconds,
+          total.getGames() / seconds);
+      this.out.flush();
+
+      return total;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Plays a whole game.
+   * 
+   * @param grid the grid, without any mines
+   * @param strategy the strategy
+   * @param seed the seed used to generate the mines and given to the strategy
+   * @param safeOpening whether the first click always opens a 3x3 area
+   * @param stats the statistics to update
+   * @return the game's result
+   */
+  static int play(Grid grid, MoveStrategy strategy, long seed, boolean safeOpening, GameStatistics stats) {
+    strategy.newGame(grid, new SplittableRandom(~seed));
+
+    // A strategy that keeps playing useless moves cannot loop forever.
+    long maxMoves = 4L * grid.getRows() * grid.getColumns();
+    long moves = 0, revealed = 0;
+    int result = 0;
+    Move move = strategy.nextMove();
+
+    if (move != null)
+      grid.generateMines(move.getRow(), move.getColumn(), seed, safeOpening);
+    while (move != null && result == 0 && moves < maxMoves) {
+      ChangeSet changes = grid.play(move.getRow(), move.getColumn(), move.getAction());
+
+      moves++;
+      for (int i = 0; i < changes.size(); i++) {
+        if (Tile.isRevealed(changes.getTile(i)))
+          revealed++;
+      }
+      result = changes.getResult();
+      strategy.onChanges(changes);
+      if (result == 0)
+        move = strategy.nextMove();
+    }
+    stats.addGame(result == Grid.WIN, moves, revealed);
+
+    return result;
+  }
+
+  /**
+   * Entry point of the batch mode.
+   * 
+   * @param args the arguments, see class documentation
+   */
+  public static void main(String[] args) {
+    long games = 10_000;
+    long seed = System.nanoTime();
+    int threads = Runtime.getRuntime().availableProcessors();
+    String strategyName = "random";
+    boolean safeOpening = false;
+    String outFile = null;
+    Map<String, int[]> boards = new LinkedHashMap<>();
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--simulate":
+            break;
+          case "--games":
+            games = Long.parseLong(args[++i]);
+            break;
+          case "--seed":
+            seed = Long.parseLong(args[++i]);
+            break;
+          case "--threads":
+            threads = Integer.parseInt(args[++i]);
+            break;
+          case "--strategy":
+            strategyName = args[++i];
+            break;
+          case "--safe-opening":
+            safeOpening = true;
+            break;
+          case "--out":
+            outFile = args[++i];
+            break;
+          case "--difficulty":
+            String name = args[++i];
+            boolean found = false;
+            for (Difficulty d : Difficulty.values()) {
+              if (name.equalsIgnoreCase("all") || name.equalsIgnoreCase(d.name())) {
+                boards.put(d.name().toLowerCase(), new int[]{d.getRows(), d.getColumns(), d.getMines()});
+                found = true;
+              }
+            }
+            if (!found)
+              throw new IllegalArgumentException("unknown difficulty " + name + ", available: all, "
+                  + Arrays.stream(Difficulty.values()).map(d -> d.name().toLowerCase()).collect(Collectors.joining(", ")));
+            break;
+          case "--size":
+            BoardSize size = BoardSize.parse(args[++i]);
+            boards.put(size.getKey(), new int[]{size.getRows(), size.getColumns(), size.getMines()});
+            break;
+          default:
+            throw new IllegalArgumentException("unknown argument " + args[i]);
+        }
+      }
+      if (!STRATEGIES.containsKey(strategyName))
+        throw new IllegalArgumentException("unknown strategy " + strategyName + ", available: " + STRATEGIES.keySet());
+      if (games <= 0 || threads <= 0)
+        throw new IllegalArgumentException("games and threads must be positive");
+    }
+    catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+      System.err.println("Invalid arguments: " + ex.getMessage());
+      System.exit(1);
+    }
+    if (boards.isEmpty()) {
+      for (Difficulty d : Difficulty.values())
+        boards.put(d.name().toLowerCase(), new int[]{d.getRows(), d.getColumns(), d.getMines()});
+    }
+
+    // System.out is only flushed, it must stay open.
+    PrintStream out = System.out;
+    try {
+      if (outFile != null)
+        out = new PrintStream(new FileOutputStream(outFile, true), true);
+      out.printf("# strategy=%s seed=%d threads=%d safe_opening=%b%n", strategyName, seed, threads, safeOpening);
+      BatchRunner runner = new BatchRunner(games, seed, threads, STRATEGIES.get(strategyName), safeOpening, out);
+      for (Map.Entry<String, int[]> board : boards.entrySet()) {
+        int[] b = board.getValue();
+        runner.run(board.getKey(), b[0], b[1], b[2]);
+      }
+    }
+    catch (FileNotFoundException | InterruptedException | ExecutionException ex) {
+      ex.printStackTrace();
+      System.exit(1);
+    }
+    finally {
+      if (out != System.out)
+        out.close();
+      else
+        out.flush();
+    }
+  }
+}
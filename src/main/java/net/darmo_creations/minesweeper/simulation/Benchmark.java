@@ -0,0 +1,607 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import javax.swing.JPanel;
+
+import net.darmo_creations.minesweeper.MainController;
+import net.darmo_creations.minesweeper.gui.BoardComponent;
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Difficulty;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.MappedGrid;
+import net.darmo_creations.minesweeper.model.Tile;
+import net.darmo_creations.minesweeper.solver.Solver;
+
+/**
+ * Command-line acceptance benchmark for board sizes. For each size, games are played by the
+ * {@link Solver} and the following are measured against the size's targets:
+ * <ul>
+ * <li>gen: generation of the mines (median);</li>
+ * <li>first: time until the first cells of the first click are available, i.e. the first batch of
+ * a streamed flood fill or the whole change set for small ones (maximum);</li>
+ * <li>click: latency of the following clicks, only the time spent in the grid is counted (99th
+ * percentile, the median is printed for information);</li>
+ * <li>paint: painting a {@value #VIEWPORT_WIDTH}x{@value #VIEWPORT_HEIGHT} viewport of the board
+ * off-screen (median).</li>
+ * </ul>
+ * Flood fills are streamed with the game's batch size.
+ * <p>
+ * The median latency of the clicks that reveal a single cell is also compared across sizes: the
+ * spread between the sizes must stay under {@value #SINGLE_CLICK_SPREAD_US}µs, i.e. a click must
+ * not depend on the area of the board.
+ * <p>
+ * For each size, a seeded game is also played on both a {@link Grid} and a {@link MappedGrid} with
+ * the same mines, mixing safe clicks, flags, marks, chords and random clicks, and every change set
+ * is compared.
+ * <p>
+ * Before the suite, the packed cells of {@link Grid} are compared with the former
+ * {@code Cell[][]} layout on a game in progress of every {@link Difficulty}: retained heap per
+ * board and time to build the player's view of the whole board (median). Both layouts must give
+ * the same view.
+ * <p>
+ * The process exits with status 1 if any target is missed or the grids or layouts differ.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * --benchmark [--size ROWSxCOLUMNS:MINES|NAME]... [--clicks N] [--seed SEED]
+ * </pre>
+ * 
+ * Custom sizes are given the default targets of the biggest suite size they do not exceed.
+ *
+ * @author Damien Vergnet
+ */
+public class Benchmark {
+  private static final int VIEWPORT_WIDTH = 1280;
+  private static final int VIEWPORT_HEIGHT = 800;
+  private static final int BUTTONS_SIZE = 15;
+  /** Minimum number of games per size, whatever the number of clicks. */
+  private static final int MIN_GAMES = 3;
+  private static final int MAX_GAMES = 1000;
+  private static final int PAINTS = 5;
+  /** Maximum number of moves played on both grids when comparing them. */
+  private static final int CHECKED_MOVES = 2000;
+  /** Number of boards kept alive at once when measuring the memory footprint of a layout. */
+  private static final int FOOTPRINT_BOARDS = 2000;
+  private static final int SCANS = 1000;
+  /** Maximum difference of single cell click latency between the measured sizes. */
+  private static final int SINGLE_CLICK_SPREAD_US = 50;
+
+  /** Default suite, from smallest to biggest. */
+  private static final List<Target> SUITE = new ArrayList<>();
+
+  static {
+    for (Difficulty difficulty : Difficulty.values())
+      SUITE.add(new Target(BoardSize.of(difficulty), 5, 16, 16, 16));
+    SUITE.add(new Target(BoardSize.parse("100x100:1600"), 10, 16, 16, 16));
+    SUITE.add(new Target(BoardSize.parse("500x500:40000"), 50, 16, 16, 16));
+    SUITE.add(new Target(BoardSize.parse("1000x1000:160000"), 150, 16, 16, 16));
+    SUITE.add(new Target(BoardSize.parse("2000x2000:640000"), 500, 16, 16, 16));
+    // Sparse board, its first click floods most of the board.
+    SUITE.add(new Target(BoardSize.parse("2000x2000:40000"), 500, 16, 16, 16));
+    SUITE.add(new Target(BoardSize.parse("5000x5000:4000000"), 3000, 16, 16, 16));
+  }
+
+  private final int clicks;
+  private final long seed;
+  /** Median latency of the clicks that revealed a single cell, for each measured size. */
+  private final Map<BoardSize, Long> singleClicks = new LinkedHashMap<>();
+
+  /**
+   * Creates a benchmark.
+   * 
+   * @param clicks minimum number of click latencies to measure per size
+   * @param seed the base seed
+   */
+  public Benchmark(int clicks, long seed) {
+    this.clicks = clicks;
+    this.seed = seed;
+  }
+
+  /**
+   * Measures a board size then prints the results.
+   * 
+   * @param target the size and its targets
+   * @return true if all targets were met
+   */
+  public boolean run(Target target) {
+    BoardSize size = target.size;
+    SplittableRandom random = new SplittableRandom(this.seed ^ size.hashCode());
+    List<Long> gen = new ArrayList<>();
+    List<Long> first = new ArrayList<>();
+    List<Long> clicks = new ArrayList<>();
+    List<Long> single = new ArrayList<>();
+
+    for (int game = 0; game < MAX_GAMES && (game < MIN_GAMES || clicks.size() < this.clicks); game++) {
+      playGame(size, random, gen, first, clicks, single);
+    }
+    if (!single.isEmpty())
+      this.singleClicks.put(size, percentile(single, 50));
+
+    long genMs = millis(percentile(gen, 50));
+    long firstMs = millis(percentile(first, 100));
+    long clickP50 = percentile(clicks, 50), clickP99 = percentile(clicks, 99);
+    long paintMs = millis(measurePaint(size));
+    int checkedMoves = compareMappedGrid(size, random);
+    boolean passed = genMs <= target.genMs && firstMs <= target.firstMs && millis(clickP99) <= target.clickMs && paintMs <= target.paintMs
+        && checkedMoves >= 0;
+
+    System.out.printf("%-18s %-4s gen=%dms/%d first=%dms/%d click_p50=%.3fms click_p99=%.3fms/%d (n=%d) paint=%dms/%d mapped=%s%n",
+        size.getKey(), passed ? "PASS" : "FAIL", genMs, target.genMs, firstMs, target.firstMs, clickP50 / 1e6, clickP99 / 1e6,
+        target.clickMs, clicks.size(), paintMs, target.paintMs, checkedMoves >= 0 ? "same (" + checkedMoves + " moves)" : "DIFFERENT");
+    System.out.flush();
+
+    return passed;
+  }
+
+  /**
+   * Plays a game with the solver until it is over or the solver would have to guess.
+   */
+  private void playGame(BoardSize size, SplittableRandom random, List<Long> gen, List<Long> first, List<Long> clicks,
+      List<Long> single) {
+    Grid grid = new Grid(size);
+    int row = random.nextInt(size.getRows()), col = random.nextInt(size.getColumns());
+    List<ChangeSet> partials = new ArrayList<>();
+    long[] firstBatch = {-1};
+
+    long start = System.nanoTime();
+    grid.generateMines(row, col, random.nextLong(), true);
+    gen.add(System.nanoTime() - start);
+
+    start = System.nanoTime();
+    ChangeSet changes = grid.play(row, col, Action.MAIN_CLICK, partial -> {
+      if (firstBatch[0] < 0)
+        firstBatch[0] = System.nanoTime();
+      partials.add(partial);
+    }, MainController.REVEAL_BATCH_SIZE);
+    first.add((firstBatch[0] < 0 ? System.nanoTime() : firstBatch[0]) - start);
+
+    Solver solver = new Solver(grid);
+    int cell;
+
+    while (changes.getResult() == 0 && clicks.size() < this.clicks && (cell = solver.nextSafeCell()) != -1) {
+      partials.clear();
+      start = System.nanoTime();
+      changes = grid.play(cell / size.getColumns(), cell % size.getColumns(), Action.MAIN_CLICK, partials::add,
+          MainController.REVEAL_BATCH_SIZE);
+      long time = System.nanoTime() - start;
+      clicks.add(time);
+      if (partials.isEmpty() && changes.size() == 1)
+        single.add(time);
+      for (ChangeSet partial : partials)
+        solver.update(partial);
+      solver.update(changes);
+    }
+  }
+
+  /**
+   * Prints the median latency of single cell clicks for each measured size.
+   * 
+   * @return true if the spread between sizes is under {@value #SINGLE_CLICK_SPREAD_US}µs
+   */
+  public boolean checkClickScaling() {
+    if (this.singleClicks.isEmpty())
+      return true;
+    long min = Long.MAX_VALUE, max = 0;
+    StringBuilder sizes = new StringBuilder();
+
+    for (Map.Entry<BoardSize, Long> e : this.singleClicks.entrySet()) {
+      min = Math.min(min, e.getValue());
+      max = Math.max(max, e.getValue());
+      sizes.append(String.format(" %s=%.1fus", e.getKey().getKey(), e.getValue() / 1e3));
+    }
+    boolean passed = max - min <= SINGLE_CLICK_SPREAD_US * 1000L;
+    System.out.printf("single-cell clicks %-4s%s spread=%.1fus/%d%n", passed ? "PASS" : "FAIL", sizes, (max - min) / 1e3,
+        SINGLE_CLICK_SPREAD_US);
+    System.out.flush();
+
+    return passed;
+  }
+
+  /**
+   * Plays the same seeded game on a {@link MappedGrid} and on a {@link Grid} restored from its
+   * cells, then compares the change sets of every move and the final boards.
+   * 
+   * @return the number of moves played or -1 if the grids did not behave the same, the first
+   *         differing move is then printed
+   */
+  private static int compareMappedGrid(BoardSize size, SplittableRandom random) {
+    int rows = size.getRows(), columns = size.getColumns();
+    Path file = null;
+
+    try {
+      file = Files.createTempFile("minesweeper", ".grid");
+      try (MappedGrid mapped = MappedGrid.create(file, rows, columns, size.getMines())) {
+        int row = random.nextInt(rows), col = random.nextInt(columns);
+        long seed = random.nextLong();
+        mapped.generateMines(row, col, seed, true);
+
+        ByteArrayOutputStream cells = new ByteArrayOutputStream(size.getCells());
+        mapped.writeCells(Channels.newChannel(cells));
+        Grid grid = Grid.readCells(rows, columns, size.getMines(), seed, Channels.newChannel(new ByteArrayInputStream(cells.toByteArray())));
+
+        ChangeSet changes = grid.play(row, col, Action.MAIN_CLICK);
+        if (!sameChanges(changes, mapped.play(row, col, Action.MAIN_CLICK), columns))
+          return differs(size, "first click", row, col);
+        Solver solver = new Solver(grid);
+        int move;
+
+        for (move = 1; move < CHECKED_MOVES && changes.getResult() == 0; move++) {
+          Action action = Action.MAIN_CLICK;
+          int p = random.nextInt(100), cell;
+          row = random.nextInt(rows);
+          col = random.nextInt(columns);
+
+          if (p < 40 && (cell = solver.nextSafeCell()) != -1) {
+            row = cell / columns;
+            col = cell % columns;
+          }
+          else if (p < 98 && !Tile.isRevealed(grid.getTile(row, col))) {
+            // Hidden cells cycle through flag, mark and nothing; flags make chords possible.
+            action = Action.SECONDARY_CLICK;
+          }
+          // Otherwise a chord on a revealed cell or, rarely, a random click on a hidden one.
+
+          changes = grid.play(row, col, action);
+          if (!sameChanges(changes, mapped.play(row, col, action), columns))
+            return differs(size, "move " + move + " " + action, row, col);
+          solver.update(changes);
+        }
+        if (changes.getResult() != 0 && !sameChanges(grid.endGame(), mapped.endGame(), columns))
+          return differs(size, "end of game", row, col);
+        for (row = 0; row < rows; row++) {
+          for (col = 0; col < columns; col++) {
+            if (grid.getTile(row, col) != mapped.getTile(row, col))
+              return differs(size, "final board", row, col);
+          }
+        }
+        return move;
+      }
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    finally {
+      try {
+        if (file != null)
+          Files.deleteIfExists(file);
+      }
+      catch (IOException ex) {
+        // Temporary files are cleaned up by the system.
+      }
+    }
+  }
+
+  /**
+   * Compares the packed cells of {@link Grid} with the former {@code Cell[][]} layout on a game
+   * in progress of the given difficulty, then prints the results.
+   * 
+   * @return true if both layouts give the same view of the board
+   */
+  private static boolean compareLayout(Difficulty difficulty, long seed) {
+    BoardSize size = BoardSize.of(difficulty);
+    SplittableRandom random = new SplittableRandom(seed);
+    int row = random.nextInt(size.getRows()), col = random.nextInt(size.getColumns());
+    long minesSeed = random.nextLong();
+    Grid grid = new Grid(size);
+    grid.generateMines(row, col, minesSeed, true);
+    grid.play(row, col, Action.MAIN_CLICK);
+    LegacyBoard legacy = new LegacyBoard(grid);
+
+    long packedBytes = footprint(() -> {
+      Grid g = new Grid(size);
+      g.generateMines(row, col, minesSeed, true);
+      return g;
+    });
+    long legacyBytes = footprint(() -> new LegacyBoard(grid));
+    long packedScan = measureScan(grid::getTiles);
+    long legacyScan = measureScan(legacy::getTiles);
+    boolean same = Arrays.equals(grid.getTiles(), legacy.getTiles());
+
+    System.out.printf("layout %-11s %-4s cells=%d memory packed=%dB cell[][]=%dB scan packed=%.1fus cell[][]=%.1fus%n",
+        difficulty.name().toLowerCase(), same ? "PASS" : "FAIL", size.getCells(), packedBytes, legacyBytes, packedScan / 1e3,
+        legacyScan / 1e3);
+    System.out.flush();
+
+    return same;
+  }
+
+  /**
+   * Returns the heap retained by one of the objects created by the given factory, in bytes.
+   */
+  private static long footprint(Supplier<Object> factory) {
+    Object[] boards = new Object[FOOTPRINT_BOARDS];
+    long before = usedMemory();
+    for (int i = 0; i < boards.length; i++)
+      boards[i] = factory.get();
+    long after = usedMemory();
+    // Keeps the boards reachable until the second measure.
+    Arrays.fill(boards, null);
+    return (after - before) / boards.length;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Builds the view of a board {@value #SCANS} times and returns the median time in nanoseconds.
+   */
+  private static long measureScan(Supplier<byte[]> view) {
+    List<Long> times = new ArrayList<>();
+    for (int i = 0; i < SCANS; i++) {
+      long start = System.nanoTime();
+      view.get();
+      times.add(System.nanoTime() - start);
+    }
+    return percentile(times, 50);
+  }
+
+  private static int differs(BoardSize size, String when, int row, int col) {
+    System.out.printf("%s: grid and mapped grid differ on %s at (%d, %d)%n", size.getKey(), when, row, col);
+    return -1;
+  }
+
+  /**
+   * Tells whether two change sets have the same result, counters and changed tiles, in any order.
+   */
+  private static boolean sameChanges(ChangeSet a, ChangeSet b, int columns) {
+    return a.getResult() == b.getResult() && a.getRemainingFlags() == b.getRemainingFlags() && a.getRevealedCells() == b.getRevealedCells()
+        && Arrays.equals(sortedChanges(a, columns), sortedChanges(b, columns));
+  }
+
+  private static long[] sortedChanges(ChangeSet changes, int columns) {
+    long[] keys = new long[changes.size()];
+    for (int i = 0; i < keys.length; i++)
+      keys[i] = ((long) changes.getRow(i) * columns + changes.getColumn(i)) << 8 | changes.getTile(i) & 0xff;
+    Arrays.sort(keys);
+    return keys;
+  }
+
+  /**
+   * Paints a viewport at the center of a fresh board and returns the median time in nanoseconds.
+   */
+  private static long measurePaint(BoardSize size) {
+    BoardComponent board = new BoardComponent();
+    // The board inherits its colors from its parent, as in the main frame.
+    new JPanel(null).add(board);
+    board.reset(size.getRows(), size.getColumns(), BUTTONS_SIZE);
+    board.setSize(board.getPreferredSize());
+    BufferedImage image = new BufferedImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    int x = Math.max(0, (board.getWidth() - VIEWPORT_WIDTH) / 2);
+    int y = Math.max(0, (board.getHeight() - VIEWPORT_HEIGHT) / 2);
+    List<Long> times = new ArrayList<>();
+
+    // The first paint renders the tiles atlas and is not counted.
+    for (int i = 0; i <= PAINTS; i++) {
+      Graphics2D g = image.createGraphics();
+      g.translate(-x, -y);
+      g.setClip(x, y, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+      long start = System.nanoTime();
+      board.paint(g);
+      if (i > 0)
+        times.add(System.nanoTime() - start);
+      g.dispose();
+    }
+    return percentile(times, 50);
+  }
+
+  private static long percentile(List<Long> values, int percentile) {
+    if (values.isEmpty())
+      return 0;
+    long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+    Arrays.sort(sorted);
+    return sorted[Math.max(0, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1)];
+  }
+
+  private static long millis(long nanos) {
+    return Math.round(nanos / 1e6);
+  }
+
+  /**
+   * Returns the targets for the given size: those of the suite if it is part of it, those of the
+   * biggest suite size with at most as many cells otherwise.
+   */
+  private static Target getTarget(BoardSize size) {
+    Target target = SUITE.get(0);
+    for (Target t : SUITE) {
+      if (t.size.equals(size))
+        return t;
+      if (t.size.getCells() <= size.getCells())
+        target = t;
+    }
+    return new Target(size, target.genMs, target.firstMs, target.clickMs, target.paintMs);
+  }
+
+  /**
+   * Entry point of the benchmark mode.
+   * 
+   * @param args the arguments, see class documentation
+   */
+  public static void main(String[] args) {
+    int clicks = 500;
+    long seed = System.nanoTime();
+    List<Target> targets = new ArrayList<>();
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--benchmark":
+            break;
+          case "--clicks":
+            clicks = Integer.parseInt(args[++i]);
+            break;
+          case "--seed":
+            seed = Long.parseLong(args[++i]);
+            break;
+          case "--size":
+            targets.add(getTarget(BoardSize.parse(args[++i])));
+            break;
+          default:
+            throw new IllegalArgumentException("unknown argument " + args[i]);
+        }
+      }
+      if (clicks <= 0)
+        throw new IllegalArgumentException("clicks must be positive");
+    }
+    catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+      System.err.println("Invalid arguments: " + ex.getMessage());
+      System.exit(1);
+    }
+    if (targets.isEmpty())
+      targets.addAll(SUITE);
+
+    // Boards are only painted off-screen.
+    System.setProperty("java.awt.headless", "true");
+    System.out.printf("# seed=%d clicks=%d%n", seed, clicks);
+    // Warms the JIT up so that the first sizes are not penalized.
+    new Benchmark(clicks, seed).playGame(BoardSize.parse("100x100:1600"), new SplittableRandom(seed), new ArrayList<>(), new ArrayList<>(),
+        new ArrayList<>(), new ArrayList<>());
+
+    boolean passed = true;
+    for (Difficulty difficulty : Difficulty.values())
+      passed &= compareLayout(difficulty, seed);
+
+    Benchmark benchmark = new Benchmark(clicks, seed);
+    for (Target target : targets)
+      passed &= benchmark.run(target);
+    passed &= benchmark.checkClickScaling();
+
+    System.out.println(passed ? "# all targets met" : "# some targets were missed");
+    System.exit(passed ? 0 : 1);
+  }
+
+  /**
+   * A board size and its targets in milliseconds.
+   */
+  private static final class Target {
+    private final BoardSize size;
+    private final int genMs, firstMs, clickMs, paintMs;
+
+    private Target(BoardSize size, int genMs, int firstMs, int clickMs, int paintMs) {
+      this.size = size;
+      this.genMs = genMs;
+      this.firstMs = firstMs;
+      this.clickMs = clickMs;
+      this.paintMs = paintMs;
+    }
+  }
+
+  /**
+   * The former layout of the grid, kept as a baseline: one object per cell, the number of nearby
+   * mines being counted each time a revealed tile is needed.
+   */
+  private static final class LegacyBoard {
+    private final LegacyCell[][] cells;
+
+    /**
+     * Copies the state of a game in progress.
+     */
+    private LegacyBoard(Grid grid) {
+      int columns = grid.getColumns();
+      this.cells = new LegacyCell[grid.getRows()][columns];
+      for (LegacyCell[] row : this.cells) {
+        for (int col = 0; col < columns; col++)
+          row[col] = new LegacyCell();
+      }
+
+      // No mine has been clicked yet, all of them are revealed.
+      ChangeSet mines = grid.endGame();
+      for (int i = 0; i < mines.size(); i++) {
+        if (mines.getTile(i) == Tile.MINE)
+          this.cells[mines.getRow(i)][mines.getColumn(i)].mine = true;
+      }
+      byte[] tiles = grid.getTiles();
+      for (int i = 0; i < tiles.length; i++) {
+        LegacyCell cell = this.cells[i / columns][i % columns];
+        cell.clicked = Tile.isRevealed(tiles[i]);
+        cell.flagged = tiles[i] == Tile.FLAG;
+        cell.marked = tiles[i] == Tile.MARK;
+      }
+    }
+
+    /**
+     * Returns the tiles of all the cells as seen by the player, in row-major order.
+     */
+    private byte[] getTiles() {
+      int rows = this.cells.length, columns = this.cells[0].length;
+      byte[] tiles = new byte[rows * columns];
+
+      for (int row = 0; row < rows; row++) {
+        for (int col = 0; col < columns; col++) {
+          LegacyCell cell = this.cells[row][col];
+          byte tile;
+
+          if (cell.clicked)
+            tile = cell.mine ? Tile.EXPLODED_MINE : (byte) getNearbyMinesNumber(row, col);
+          else if (cell.flagged)
+            tile = Tile.FLAG;
+          else if (cell.marked)
+            tile = Tile.MARK;
+          else
+            tile = Tile.HIDDEN;
+          tiles[row * columns + col] = tile;
+        }
+      }
+      return tiles;
+    }
+
+    private int getNearbyMinesNumber(int row, int col) {
+      int mines = 0;
+
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, this.cells.length - 1); r++) {
+        for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, this.cells[0].length - 1); c++) {
+          if ((r != row || c != col) && this.cells[r][c].mine)
+            mines++;
+        }
+      }
+      return mines;
+    }
+  }
+
+  /**
+   * A cell of the former layout.
+   */
+  private static final class LegacyCell {
+    private boolean clicked, mine, flagged, marked;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+/**
+ * Aggregated statistics over a batch of simulated games. Instances are not thread-safe, each
+ * worker fills its own then they are merged.
+ *
+ * @author Damien Vergnet
+ */
+public class GameStatistics {
+  private long games;
+  private long wins;
+  private long moves;
+  private long revealedCells;
+
+  /**
+   * Records a finished game.
+   * 
+   * @param won true if the game was won
+   * @param moves number of moves played
+   * @param revealedCells number of cells revealed during the game
+   */
+  public void addGame(boolean won, long moves, long revealedCells) {
+    this.games++;
+    if (won)
+      this.wins++;
+    this.moves += moves;
+    this.revealedCells += revealedCells;
+  }
+
+  /**
+   * Adds the given statistics to these ones.
+   */
+  public void merge(GameStatistics other) {
+    this.games += other.games;
+    this.wins += other.wins;
+    this.moves += other.moves;
+    this.revealedCells += other.revealedCells;
+  }
+
+  public long getGames() {
+    return this.games;
+  }
+
+  public long getWins() {
+    return this.wins;
+  }
+
+  public long getMoves() {
+    return this.moves;
+  }
+
+  public long getRevealedCells() {
+    return this.revealedCells;
+  }
+
+  /**
+   * Returns the ratio of won games, between 0 and 1.
+   */
+  public double getWinRate() {
+    return this.games == 0 ? 0 : (double) this.wins / this.games;
+  }
+
+  @Override
+  public String toString() {
+    double games = Math.max(this.games, 1);
+    return String.format("games=%d wins=%d win_rate=%.2f%% avg_moves=%.2f avg_revealed=%.2f", this.games, this.wins,
+        100 * getWinRate(), this.moves / games, this.revealedCells / games);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+import net.darmo_creations.minesweeper.model.Action;
+
+/**
+ * A move is an action performed on a cell.
+ *
+ * @author Damien Vergnet
+ */
+public final class Move {
+  private final int row, column;
+  private final Action action;
+
+  public Move(int row, int column, Action action) {
+    this.row = row;
+    this.column = column;
+    this.action = action;
+  }
+
+  public int getRow() {
+    return this.row;
+  }
+
+  public int getColumn() {
+    return this.column;
+  }
+
+  public Action getAction() {
+    return this.action;
+  }
+
+  @Override
+  public String toString() {
+    return this.action + "(" + this.row + ", " + this.column + ")";
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+import java.util.SplittableRandom;
+
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Grid;
+
+/**
+ * A move strategy decides which moves to play during a simulated game. Strategies only see what a
+ * player would see, i.e. the tiles of the grid. An instance is only used by one thread at a time.
+ *
+ * @author Damien Vergnet
+ */
+public interface MoveStrategy {
+  /**
+   * Called before each game. Mines have not been generated yet when this method is called.
+   * 
+   * @param grid the new grid
+   * @param random the random generator to use for this game
+   */
+  void newGame(Grid grid, SplittableRandom random);
+
+  /**
+   * Returns the next move to play. The first move of a game must be a main click.
+   * 
+   * @return the move or null to give up
+   */
+  Move nextMove();
+
+  /**
+   * Called after each move with the changes it caused.
+   * 
+   * @param changes the changes
+   */
+  void onChanges(ChangeSet changes);
+}
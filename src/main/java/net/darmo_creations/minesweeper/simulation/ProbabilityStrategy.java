@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.Tile;
+import net.darmo_creations.minesweeper.solver.ProbabilityEngine;
+
+/**
+ * Same as {@link SolverStrategy} but guesses the hidden cell that is the least likely to contain a
+ * mine according to the {@link ProbabilityEngine}.
+ *
+ * @author Damien Vergnet
+ */
+public class ProbabilityStrategy extends SolverStrategy {
+  private final ProbabilityEngine engine;
+
+  public ProbabilityStrategy() {
+    this.engine = new ProbabilityEngine();
+  }
+
+  @Override
+  protected Move guess() {
+    Grid grid = getGrid();
+    if (!grid.areMinesGenerated())
+      return super.guess();
+
+    double[] probabilities = this.engine.computeProbabilities(grid);
+    int best = -1;
+    for (int cell = 0; cell < probabilities.length; cell++) {
+      byte tile = grid.getTile(cell / grid.getColumns(), cell % grid.getColumns());
+      if (!Tile.isRevealed(tile) && (best == -1 || probabilities[cell] < probabilities[best]))
+        best = cell;
+    }
+    return best == -1 ? null : new Move(best / grid.getColumns(), best % grid.getColumns(), Action.MAIN_CLICK);
+  }
+}
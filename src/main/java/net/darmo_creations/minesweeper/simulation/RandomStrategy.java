@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+import java.util.SplittableRandom;
+
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.Tile;
+
+/**
+ * This strategy clicks a random hidden cell at each move. Hidden cells are kept in an array from
+ * which revealed cells are removed in constant time.
+ *
+ * @author Damien Vergnet
+ */
+public class RandomStrategy implements MoveStrategy {
+  private int columns;
+  private SplittableRandom random;
+  /** Indices of the hidden cells; only the first {@code hiddenNb} are valid. */
+  private int[] hidden;
+  /** Position of each cell inside {@code hidden}. */
+  private int[] positions;
+  private int hiddenNb;
+
+  @Override
+  public void newGame(Grid grid, SplittableRandom random) {
+    int size = grid.getRows() * grid.getColumns();
+
+    this.columns = grid.getColumns();
+    this.random = random;
+    if (this.hidden == null || this.hidden.length != size) {
+      this.hidden = new int[size];
+      this.positions = new int[size];
+    }
+    for (int i = 0; i < size; i++) {
+      this.hidden[i] = i;
+      this.positions[i] = i;
+    }
+    this.hiddenNb = size;
+  }
+
+  @Override
+  public Move nextMove() {
+    if (this.hiddenNb == 0)
+      return null;
+    int cell = this.hidden[this.random.nextInt(this.hiddenNb)];
+    return new Move(cell / this.columns, cell % this.columns, Action.MAIN_CLICK);
+  }
+
+  @Override
+  public void onChanges(ChangeSet changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      if (Tile.isRevealed(changes.getTile(i)))
+        remove(changes.getRow(i) * this.columns + changes.getColumn(i));
+    }
+  }
+
+  private void remove(int cell) {
+    int pos = this.positions[cell];
+    if (pos >= this.hiddenNb)
+      return;
+    int last = this.hidden[--this.hiddenNb];
+
+    this.hidden[pos] = last;
+    this.positions[last] = pos;
+    this.hidden[this.hiddenNb] = cell;
+    this.positions[cell] = this.hiddenNb;
+  }
+}
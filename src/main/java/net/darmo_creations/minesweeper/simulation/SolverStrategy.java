@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.simulation;
+
+import java.util.SplittableRandom;
+
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.solver.Solver;
+
+/**
+ * This strategy clicks the cells the {@link Solver} proves safe and only guesses a random cell,
+ * avoiding known mines, when no deduction can be made.
+ *
+ * @author Damien Vergnet
+ */
+public class SolverStrategy implements MoveStrategy {
+  /** Number of random picks tried before accepting a known mine as a guess. */
+  private static final int MAX_PICKS = 64;
+
+  private final RandomStrategy guesser;
+  private Grid grid;
+  private Solver solver;
+
+  public SolverStrategy() {
+    this.guesser = new RandomStrategy();
+  }
+
+  @Override
+  public void newGame(Grid grid, SplittableRandom random) {
+    this.grid = grid;
+    this.solver = null;
+    this.guesser.newGame(grid, random);
+  }
+
+  @Override
+  public Move nextMove() {
+    if (this.solver != null) {
+      int cell = this.solver.nextSafeCell();
+      if (cell != -1)
+        return new Move(cell / this.grid.getColumns(), cell % this.grid.getColumns(), Action.MAIN_CLICK);
+    }
+
+    return guess();
+  }
+
+  /**
+   * Called when the solver cannot find any safe cell. Picks a random hidden cell, avoiding known
+   * mines.
+   * 
+   * @return the move to play or null to give up
+   */
+  protected Move guess() {
+    Move move = this.guesser.nextMove();
+    for (int i = 0; move != null && this.solver != null && i < MAX_PICKS
+        && this.solver.isKnownMine(move.getRow(), move.getColumn()); i++) {
+      move = this.guesser.nextMove();
+    }
+    return move;
+  }
+
+  /**
+   * Returns the grid of the current game.
+   */
+  protected Grid getGrid() {
+    return this.grid;
+  }
+
+  @Override
+  public void onChanges(ChangeSet changes) {
+    this.guesser.onChanges(changes);
+    // The solver is created after the first move, once the mines exist.
+    if (this.solver == null)
+      this.solver = new Solver(this.grid);
+    else
+      this.solver.update(changes);
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.solver;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.darmo_creations.minesweeper.model.Action;
+import net.darmo_creations.minesweeper.model.BoardSize;
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Difficulty;
+import net.darmo_creations.minesweeper.model.Grid;
+
+/**
+ * Generates boards that can be finished without guessing, i.e. that the {@link Solver} completes
+ * from their start cell.
+ * <p>
+ * Candidates are generated and validated by background worker threads, accepted boards being kept
+ * in a bounded queue per board size. Taking a board never blocks: each board taken is replaced by
+ * a new one in the background and if none is ready, the caller falls back to a regular board.
+ * <p>
+ * Queues of the difficulties are filled as soon as the generator is created, those of custom sizes
+ * on their first use, one board at a time so that a custom size never takes up all the workers.
+ * Boards with more than {@link #MAX_CELLS} cells are never generated as validating them would take
+ * too long. Custom sizes for which no board is found after {@link #MAX_ATTEMPTS} candidates, like
+ * very dense ones, are given up.
+ *
+ * @author Damien Vergnet
+ */
+public class NoGuessGenerator {
+  /** Maximum number of cells of the boards this generator handles. */
+  public static final int MAX_CELLS = 10_000;
+  /** Maximum number of candidates generated to find one board. */
+  public static final int MAX_ATTEMPTS = 1000;
+
+  private final int capacity;
+  private final ExecutorService executor;
+  private final Map<BoardSize, BlockingQueue<Board>> boards;
+  /** Custom sizes no board could be found for. */
+  private final Set<BoardSize> unsupported;
+  /** Custom sizes whose queue is being filled. */
+  private final Set<BoardSize> refilling;
+
+  /**
+   * Creates a generator and starts filling the queues of all difficulties.
+   * 
+   * @param capacity number of boards to keep ready for each difficulty
+   * @param threads number of worker threads
+   */
+  public NoGuessGenerator(int capacity, int threads) {
+    this.capacity = capacity;
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "No-guess generator");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+    this.boards = new ConcurrentHashMap<>();
+    this.unsupported = ConcurrentHashMap.newKeySet();
+    this.refilling = ConcurrentHashMap.newKeySet();
+    for (Difficulty difficulty : Difficulty.values()) {
+      getQueue(BoardSize.of(difficulty));
+    }
+  }
+
+  /**
+   * Creates a generator that keeps 4 boards per difficulty and uses all the cores but one.
+   */
+  public NoGuessGenerator() {
+    this(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  /**
+   * Returns a ready board of the given size, if any, and schedules the generation of its
+   * replacement. This method never blocks.
+   * 
+   * @param size the board size
+   * @return the board or an empty optional if none is ready yet or the size is not supported
+   */
+  public Optional<Board> take(BoardSize size) {
+    if (size.getCells() > MAX_CELLS || this.unsupported.contains(size))
+      return Optional.empty();
+    Board board = getQueue(size).poll();
+    if (board != null)
+      refill(size);
+    return Optional.ofNullable(board);
+  }
+
+  /**
+   * Stops all the workers. Boards already generated are lost.
+   */
+  public void shutdown() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Returns the queue for the given size, creating it and scheduling its filling if needed.
+   */
+  private BlockingQueue<Board> getQueue(BoardSize size) {
+    BlockingQueue<Board> queue = this.boards.get(size);
+
+    if (queue == null) {
+      BlockingQueue<Board> previous = this.boards.putIfAbsent(size, queue = new ArrayBlockingQueue<>(this.capacity));
+      if (previous != null)
+        return previous;
+      if (size.getDifficulty().isPresent()) {
+        for (int i = 0; i < this.capacity; i++)
+          refill(size);
+      }
+      else {
+        refill(size);
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * Schedules the generation of a board of the given size. Custom sizes have at most one pending
+   * generation that goes on until their queue is full.
+   */
+  private void refill(BoardSize size) {
+    if (size.getDifficulty().isPresent() || this.refilling.add(size))
+      schedule(size);
+  }
+
+  private void schedule(BoardSize size) {
+    try {
+      this.executor.execute(() -> generateBoard(size));
+    }
+    catch (RejectedExecutionException ex) {
+      // The generator has been shut down.
+    }
+  }
+
+  /**
+   * Generates a board and adds it to the queue of its size. Called from the workers.
+   */
+  private void generateBoard(BoardSize size) {
+    boolean custom = !size.getDifficulty().isPresent();
+    BlockingQueue<Board> queue = this.boards.get(size);
+    Board board = null;
+
+    for (int i = 0; board == null && i < MAX_ATTEMPTS && !Thread.currentThread().isInterrupted(); i++) {
+      board = generate(size.getRows(), size.getColumns(), size.getMines());
+    }
+    if (Thread.currentThread().isInterrupted())
+      return;
+
+    if (board == null) {
+      if (custom) {
+        this.unsupported.add(size);
+        this.boards.remove(size);
+        this.refilling.remove(size);
+      }
+      else {
+        // Difficulties always have solvable boards, this was just bad luck.
+        schedule(size);
+      }
+    }
+    else {
+      queue.offer(board);
+      if (custom) {
+        this.refilling.remove(size);
+        if (queue.remainingCapacity() > 0)
+          refill(size);
+      }
+    }
+  }
+
+  /**
+   * Generates one candidate board and validates it.
+   * 
+   * @param rows number of rows
+   * @param columns number of columns
+   * @param mines number of mines
+   * @return the board or null if it needs guessing
+   */
+  public static Board generate(int rows, int columns, int mines) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    Board board = new Board(rows, columns, mines, random.nextLong(), random.nextInt(rows), random.nextInt(columns));
+    return isSolvable(board) ? board : null;
+  }
+
+  /**
+   * Tells whether the solver can finish the given board from its start cell.
+   */
+  public static boolean isSolvable(Board board) {
+    Grid grid = board.createGrid();
+    ChangeSet changes = grid.play(board.getStartRow(), board.getStartColumn(), Action.MAIN_CLICK);
+    Solver solver = new Solver(grid);
+    int cell;
+
+    while (changes.getResult() == 0 && (cell = solver.nextSafeCell()) != -1) {
+      changes = grid.play(cell / board.getColumns(), cell % board.getColumns(), Action.MAIN_CLICK);
+      solver.update(changes);
+    }
+    return changes.getResult() == Grid.WIN;
+  }
+
+  /**
+   * A board that can be solved without guessing when starting from its start cell. Mines are
+   * generated from the seed with a safe opening around the start cell.
+   */
+  public static final class Board {
+    private final int rows, columns, mines;
+    private final long seed;
+    private final int startRow, startColumn;
+
+    private Board(int rows, int columns, int mines, long seed, int startRow, int startColumn) {
+      this.rows = rows;
+      this.columns = columns;
+      this.mines = mines;
+      this.seed = seed;
+      this.startRow = startRow;
+      this.startColumn = startColumn;
+    }
+
+    public int getRows() {
+      return this.rows;
+    }
+
+    public int getColumns() {
+      return this.columns;
+    }
+
+    public long getSeed() {
+      return this.seed;
+    }
+
+    public int getStartRow() {
+      return this.startRow;
+    }
+
+    public int getStartColumn() {
+      return this.startColumn;
+    }
+
+    /**
+     * Creates a new grid for this board. Mines are generated but the start cell is not clicked.
+     */
+    public Grid createGrid() {
+      Grid grid = new Grid(this.rows, this.columns, this.mines);
+      grid.generateMines(this.startRow, this.startColumn, this.seed, true);
+      return grid;
+    }
+  }
+}
@@ -0,0 +1,567 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.solver;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.IntList;
+import net.darmo_creations.minesweeper.model.Tile;
+
+/**
+ * Computes the exact probability for each hidden cell to contain a mine, given what the player can
+ * see.
+ * <p>
+ * Hidden cells next to a number (the frontier) are split into independent components, i.e. groups
+ * of cells that do not share any number. Each component's valid configurations are enumerated
+ * separately and counted by number of mines; components are enumerated in parallel and the biggest
+ * ones are further split on their first cells. Cells next to the same numbers are enumerated
+ * together by number of mines rather than one by one. Configurations are then weighted by the number of
+ * ways the remaining mines can be spread over the hidden cells that are not next to any number.
+ * These weights are computed with big integers so that no precision is lost on large grids.
+ * <p>
+ * Flags are ignored as they may be wrong. Enumeration is exponential in the size of the largest
+ * component, which stays small on usual boards.
+ *
+ * @author Damien Vergnet
+ */
+public class ProbabilityEngine {
+  /** Components with more classes than this are split into several tasks. */
+  private static final int SPLIT_THRESHOLD = 16;
+  /** Number of classes at the start of a component on which tasks are split. */
+  private static final int SPLIT_DEPTH = 4;
+
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates an engine that runs on the given pool.
+   * 
+   * @param pool the pool
+   */
+  public ProbabilityEngine(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Creates an engine that runs on the common pool.
+   */
+  public ProbabilityEngine() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes the probabilities.
+   * 
+   * @param grid the grid
+   * @return the probability for each cell to contain a mine, indexed by {@code row * columns + col};
+   *         revealed cells have a probability of 0
+   * @throws IllegalStateException if the visible tiles are inconsistent
+   */
+  public double[] computeProbabilities(Grid grid) {
+    int rows = grid.getRows(), columns = grid.getColumns();
+    byte[] tiles = new byte[rows * columns];
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < columns; col++) {
+        tiles[row * columns + col] = grid.getTile(row, col);
+      }
+    }
+
+    List<Component> components = findComponents(tiles, rows, columns);
+    List<ForkJoinTask<Counts>> tasks = new ArrayList<>();
+    for (Component component : components) {
+      tasks.add(this.pool.submit(new EnumerationTask(component, 0, new int[component.constraintsNb], component.constraintSizes.clone(),
+          new int[component.classSizes.length], 1)));
+    }
+    Counts[] counts = new Counts[components.size()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = tasks.get(i).join();
+      if (counts[i].isEmpty())
+        throw new IllegalStateException("inconsistent grid");
+    }
+
+    double[] probabilities = new double[tiles.length];
+    int frontierSize = 0;
+    for (Component component : components)
+      frontierSize += component.cells.length;
+    int unconstrained = 0;
+    for (byte tile : tiles) {
+      if (!Tile.isRevealed(tile))
+        unconstrained++;
+    }
+    unconstrained -= frontierSize;
+
+    combine(counts, components, unconstrained, grid.getMinesNumber(), probabilities, tiles);
+
+    return probabilities;
+  }
+
+  /**
+   * Combines the configurations of all components with the unconstrained cells then fills in the
+   * probabilities.
+   */
+  private void combine(Counts[] counts, List<Component> components, int unconstrained, int mines, double[] probabilities,
+      byte[] tiles) {
+    int n = counts.length;
+    // prefix[i] = distribution of the mines in components [0, i), suffix[i] = in [i, n)
+    BigInteger[][] prefix = new BigInteger[n + 1][];
+    BigInteger[][] suffix = new BigInteger[n + 1][];
+    prefix[0] = new BigInteger[]{BigInteger.ONE};
+    suffix[n] = new BigInteger[]{BigInteger.ONE};
+    for (int i = 0; i < n; i++)
+      prefix[i + 1] = convolve(prefix[i], counts[i].totals());
+    for (int i = n - 1; i >= 0; i--)
+      suffix[i] = convolve(suffix[i + 1], counts[i].totals());
+
+    BigInteger[] binomials = binomials(unconstrained, mines);
+    BigInteger[] all = prefix[n];
+    BigInteger total = BigInteger.ZERO;
+    BigInteger unconstrainedMines = BigInteger.ZERO;
+    for (int m = 0; m < all.length; m++) {
+      int rest = mines - m;
+      if (rest >= 0 && rest <= unconstrained) {
+        BigInteger w = all[m].multiply(binomials[rest]);
+        total = total.add(w);
+        unconstrainedMines = unconstrainedMines.add(w.multiply(BigInteger.valueOf(rest)));
+      }
+    }
+    if (total.signum() == 0)
+      throw new IllegalStateException("inconsistent grid");
+
+    BigDecimal totalDecimal = new BigDecimal(total);
+    if (unconstrained > 0) {
+      double p = divide(unconstrainedMines, totalDecimal.multiply(BigDecimal.valueOf(unconstrained)));
+      for (int cell = 0; cell < tiles.length; cell++) {
+        if (!Tile.isRevealed(tiles[cell]))
+          probabilities[cell] = p;
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      Component component = components.get(i);
+      BigInteger[] others = convolve(prefix[i], suffix[i + 1]);
+      // weights[k] = number of ways to complete a configuration of this component having k mines
+      BigInteger[] weights = new BigInteger[counts[i].configs.length];
+      for (int k = 0; k < weights.length; k++) {
+        weights[k] = BigInteger.ZERO;
+        for (int m = 0; m < others.length; m++) {
+          int rest = mines - k - m;
+          if (rest >= 0 && rest <= unconstrained)
+            weights[k] = weights[k].add(others[m].multiply(binomials[rest]));
+        }
+      }
+      for (int v = 0; v < component.classSizes.length; v++) {
+        BigInteger sum = BigInteger.ZERO;
+        for (int k = 0; k < weights.length; k++)
+          sum = sum.add(weights[k].multiply(BigInteger.valueOf(counts[i].classMines[k][v])));
+        // All cells of a class are equally likely to contain a mine.
+        double p = divide(sum, totalDecimal.multiply(BigDecimal.valueOf(component.classSizes[v])));
+        for (int c = 0; c < component.cells.length; c++) {
+          if (component.classOf[c] == v)
+            probabilities[component.cells[c]] = p;
+        }
+      }
+    }
+  }
+
+  private static double divide(BigInteger a, BigDecimal b) {
+    return new BigDecimal(a).divide(b, MathContext.DECIMAL64).doubleValue();
+  }
+
+  /**
+   * Returns C(n, k) for k in [0, max].
+   */
+  private static BigInteger[] binomials(int n, int max) {
+    BigInteger[] b = new BigInteger[max + 1];
+    b[0] = BigInteger.ONE;
+    for (int k = 1; k <= max; k++) {
+      b[k] = k > n ? BigInteger.ZERO : b[k - 1].multiply(BigInteger.valueOf(n - k + 1)).divide(BigInteger.valueOf(k));
+    }
+    return b;
+  }
+
+  private static BigInteger[] convolve(BigInteger[] a, BigInteger[] b) {
+    BigInteger[] c = new BigInteger[a.length + b.length - 1];
+    Arrays.fill(c, BigInteger.ZERO);
+    for (int i = 0; i < a.length; i++) {
+      if (a[i].signum() == 0)
+        continue;
+      for (int j = 0; j < b.length; j++)
+        c[i + j] = c[i + j].add(a[i].multiply(b[j]));
+    }
+    return c;
+  }
+
+  /**
+   * Splits the frontier into independent components using a union-find over the hidden cells,
+   * cells around the same number being merged together.
+   */
+  private static List<Component> findComponents(byte[] tiles, int rows, int columns) {
+    int[] parent = new int[tiles.length];
+    boolean[] frontier = new boolean[tiles.length];
+    Arrays.fill(parent, -1);
+    IntList numbers = new IntList();
+
+    for (int cell = 0; cell < tiles.length; cell++) {
+      if (!Tile.isRevealed(tiles[cell]))
+        continue;
+      int first = -1;
+      int row = cell / columns, col = cell % columns;
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+        for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, columns - 1); c++) {
+          int n = r * columns + c;
+          if (!Tile.isRevealed(tiles[n])) {
+            if (!frontier[n]) {
+              frontier[n] = true;
+              parent[n] = n;
+            }
+            if (first == -1)
+              first = n;
+            else
+              union(parent, first, n);
+          }
+        }
+      }
+      if (first != -1)
+        numbers.add(cell);
+    }
+
+    // Group cells by root, in the order numbers reference them so that constraints get complete
+    // early during enumeration.
+    int[] componentOfRoot = new int[tiles.length];
+    int[] local = new int[tiles.length];
+    Arrays.fill(componentOfRoot, -1);
+    Arrays.fill(local, -1);
+    List<IntList> cellLists = new ArrayList<>();
+    List<IntList> numberLists = new ArrayList<>();
+    for (int i = 0; i < numbers.size(); i++) {
+      int number = numbers.get(i);
+      int row = number / columns, col = number % columns;
+      int id = -1;
+      for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+        for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, columns - 1); c++) {
+          int n = r * columns + c;
+          if (!frontier[n])
+            continue;
+          int root = find(parent, n);
+          if (componentOfRoot[root] == -1) {
+            componentOfRoot[root] = cellLists.size();
+            cellLists.add(new IntList());
+            numberLists.add(new IntList());
+          }
+          id = componentOfRoot[root];
+          if (local[n] == -1) {
+            local[n] = cellLists.get(id).size();
+            cellLists.get(id).add(n);
+          }
+        }
+      }
+      numberLists.get(id).add(number);
+    }
+
+    List<Component> components = new ArrayList<>();
+    for (int id = 0; id < cellLists.size(); id++) {
+      components.add(new Component(cellLists.get(id), numberLists.get(id), local, tiles, rows, columns));
+    }
+    return components;
+  }
+
+  private static int find(int[] parent, int i) {
+    while (parent[i] != i) {
+      parent[i] = parent[parent[i]];
+      i = parent[i];
+    }
+    return i;
+  }
+
+  private static void union(int[] parent, int a, int b) {
+    int ra = find(parent, a), rb = find(parent, b);
+    if (ra != rb)
+      parent[ra] = rb;
+  }
+
+  /**
+   * A set of frontier cells and the numbers that constrain them. Cells constrained by exactly the
+   * same numbers are interchangeable and grouped into classes: only the number of mines in each
+   * class is enumerated, each count being weighted by the number of ways to place them.
+   */
+  private static final class Component {
+    /** Global indices of the cells. */
+    final int[] cells;
+    /** Class of each cell. */
+    final int[] classOf;
+    /** Number of cells in each class, in enumeration order. */
+    final int[] classSizes;
+    /** Constraints each class belongs to. */
+    final int[][] classConstraints;
+    final int constraintsNb;
+    /** Number of mines required by each constraint. */
+    final int[] required;
+    /** Number of cells of each constraint. */
+    final int[] constraintSizes;
+
+    Component(IntList cells, IntList numbers, int[] local, byte[] tiles, int rows, int columns) {
+      this.cells = new int[cells.size()];
+      for (int i = 0; i < this.cells.length; i++)
+        this.cells[i] = cells.get(i);
+      this.constraintsNb = numbers.size();
+      this.required = new int[this.constraintsNb];
+      this.constraintSizes = new int[this.constraintsNb];
+
+      IntList[] byCell = new IntList[this.cells.length];
+      for (int i = 0; i < byCell.length; i++)
+        byCell[i] = new IntList(4);
+      for (int k = 0; k < this.constraintsNb; k++) {
+        int number = numbers.get(k);
+        int row = number / columns, col = number % columns;
+        this.required[k] = tiles[number];
+        for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+          for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, columns - 1); c++) {
+            int n = r * columns + c;
+            if (!Tile.isRevealed(tiles[n])) {
+              byCell[local[n]].add(k);
+              this.constraintSizes[k]++;
+            }
+          }
+        }
+      }
+
+      // Group cells having the same constraints.
+      Map<String, Integer> classes = new HashMap<>();
+      List<int[]> constraintsOfClass = new ArrayList<>();
+      IntList sizes = new IntList();
+      int[] rawClassOf = new int[this.cells.length];
+      for (int i = 0; i < byCell.length; i++) {
+        int[] constraints = new int[byCell[i].size()];
+        for (int j = 0; j < constraints.length; j++)
+          constraints[j] = byCell[i].get(j);
+        String key = Arrays.toString(constraints);
+        Integer id = classes.get(key);
+        if (id == null) {
+          id = constraintsOfClass.size();
+          classes.put(key, id);
+          constraintsOfClass.add(constraints);
+          sizes.add(0);
+        }
+        rawClassOf[i] = id;
+      }
+      int[] rawSizes = new int[sizes.size()];
+      for (int i = 0; i < rawClassOf.length; i++)
+        rawSizes[rawClassOf[i]]++;
+
+      // Order classes breadth-first through shared constraints so that constraints are complete as
+      // early as possible, which prunes the search.
+      int classesNb = rawSizes.length;
+      IntList[] classesOfConstraint = new IntList[this.constraintsNb];
+      for (int k = 0; k < this.constraintsNb; k++)
+        classesOfConstraint[k] = new IntList(4);
+      for (int v = 0; v < classesNb; v++) {
+        for (int k : constraintsOfClass.get(v))
+          classesOfConstraint[k].add(v);
+      }
+      int[] order = new int[classesNb];
+      int[] rank = new int[classesNb];
+      Arrays.fill(rank, -1);
+      int head = 0, tail = 0;
+      for (int start = 0; start < classesNb; start++) {
+        if (rank[start] != -1)
+          continue;
+        rank[start] = tail;
+        order[tail++] = start;
+        while (head < tail) {
+          int v = order[head++];
+          for (int k : constraintsOfClass.get(v)) {
+            for (int j = 0; j < classesOfConstraint[k].size(); j++) {
+              int w = classesOfConstraint[k].get(j);
+              if (rank[w] == -1) {
+                rank[w] = tail;
+                order[tail++] = w;
+              }
+            }
+          }
+        }
+      }
+
+      this.classSizes = new int[classesNb];
+      this.classConstraints = new int[classesNb][];
+      for (int v = 0; v < classesNb; v++) {
+        this.classSizes[rank[v]] = rawSizes[v];
+        this.classConstraints[rank[v]] = constraintsOfClass.get(v);
+      }
+      this.classOf = new int[this.cells.length];
+      for (int i = 0; i < this.cells.length; i++)
+        this.classOf[i] = rank[rawClassOf[i]];
+    }
+  }
+
+  /**
+   * Configuration counts of a component, by number of mines.
+   */
+  private static final class Counts {
+    /** configs[k] = number of valid configurations with k mines. */
+    final long[] configs;
+    /**
+     * classMines[k][v] = total number of mines in class v over all the configurations with k mines.
+     */
+    final long[][] classMines;
+
+    Counts(Component component) {
+      this.configs = new long[component.cells.length + 1];
+      this.classMines = new long[component.cells.length + 1][component.classSizes.length];
+    }
+
+    boolean isEmpty() {
+      for (long c : this.configs) {
+        if (c != 0)
+          return false;
+      }
+      return true;
+    }
+
+    void merge(Counts other) {
+      for (int k = 0; k < this.configs.length; k++) {
+        this.configs[k] = Math.addExact(this.configs[k], other.configs[k]);
+        for (int v = 0; v < this.classMines[k].length; v++)
+          this.classMines[k][v] = Math.addExact(this.classMines[k][v], other.classMines[k][v]);
+      }
+    }
+
+    BigInteger[] totals() {
+      BigInteger[] totals = new BigInteger[this.configs.length];
+      for (int k = 0; k < totals.length; k++)
+        totals[k] = BigInteger.valueOf(this.configs[k]);
+      return totals;
+    }
+  }
+
+  /**
+   * Enumerates the configurations of a component from a given class, the previous classes having
+   * already been assigned.
+   */
+  private static final class EnumerationTask extends RecursiveTask<Counts> {
+    private static final long serialVersionUID = 4613264780216298457L;
+
+    private final Component component;
+    private final int start;
+    /** Mines already placed in each constraint. */
+    private final int[] placed;
+    /** Cells not assigned yet in each constraint. */
+    private final int[] free;
+    /** Mines in each class. */
+    private final int[] mines;
+    /** Number of ways to place the mines in the already assigned classes. */
+    private final long weight;
+
+    EnumerationTask(Component component, int start, int[] placed, int[] free, int[] mines, long weight) {
+      this.component = component;
+      this.start = start;
+      this.placed = placed;
+      this.free = free;
+      this.mines = mines;
+      this.weight = weight;
+    }
+
+    @Override
+    protected Counts compute() {
+      Component comp = this.component;
+      Counts counts = new Counts(comp);
+
+      if (comp.classSizes.length > SPLIT_THRESHOLD && this.start < SPLIT_DEPTH && this.start < comp.classSizes.length) {
+        List<EnumerationTask> subtasks = new ArrayList<>();
+        int size = comp.classSizes[this.start];
+        long binomial = 1;
+        for (int j = 0; j <= size; j++) {
+          if (j > 0)
+            binomial = binomial * (size - j + 1) / j;
+          int[] placed = this.placed.clone(), free = this.free.clone(), mines = this.mines.clone();
+          if (assign(comp, this.start, j, placed, free, mines))
+            subtasks.add(new EnumerationTask(comp, this.start + 1, placed, free, mines, Math.multiplyExact(this.weight, binomial)));
+        }
+        for (EnumerationTask task : invokeAll(subtasks))
+          counts.merge(task.join());
+        return counts;
+      }
+
+      int minesNb = 0;
+      for (int i = 0; i < this.start; i++)
+        minesNb += this.mines[i];
+      enumerate(comp, this.start, this.placed, this.free, this.mines, minesNb, this.weight, counts);
+      return counts;
+    }
+
+    /**
+     * Depth-first enumeration with pruning on each constraint.
+     */
+    private static void enumerate(Component comp, int v, int[] placed, int[] free, int[] mines, int minesNb, long weight,
+        Counts counts) {
+      if (v == comp.classSizes.length) {
+        counts.configs[minesNb] = Math.addExact(counts.configs[minesNb], weight);
+        long[] classMines = counts.classMines[minesNb];
+        for (int w = 0; w < mines.length; w++) {
+          if (mines[w] != 0)
+            classMines[w] = Math.addExact(classMines[w], Math.multiplyExact(weight, mines[w]));
+        }
+        return;
+      }
+      int size = comp.classSizes[v];
+      long binomial = 1;
+      for (int j = 0; j <= size; j++) {
+        if (j > 0)
+          binomial = binomial * (size - j + 1) / j;
+        if (assign(comp, v, j, placed, free, mines))
+          enumerate(comp, v + 1, placed, free, mines, minesNb + j, Math.multiplyExact(weight, binomial), counts);
+        unassign(comp, v, j, placed, free, mines);
+      }
+    }
+
+    /**
+     * Puts the given number of mines in a class and tells whether all its constraints can still be
+     * satisfied. The assignment is applied even if it fails and must be undone with
+     * {@link #unassign(Component, int, int, int[], int[], int[])}.
+     */
+    private static boolean assign(Component comp, int v, int minesNb, int[] placed, int[] free, int[] mines) {
+      boolean valid = true;
+      mines[v] = minesNb;
+      for (int k : comp.classConstraints[v]) {
+        free[k] -= comp.classSizes[v];
+        placed[k] += minesNb;
+        if (placed[k] > comp.required[k] || placed[k] + free[k] < comp.required[k])
+          valid = false;
+      }
+      return valid;
+    }
+
+    private static void unassign(Component comp, int v, int minesNb, int[] placed, int[] free, int[] mines) {
+      mines[v] = 0;
+      for (int k : comp.classConstraints[v]) {
+        free[k] += comp.classSizes[v];
+        placed[k] -= minesNb;
+      }
+    }
+  }
+}
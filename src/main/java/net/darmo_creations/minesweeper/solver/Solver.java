@@ -0,0 +1,344 @@
+/*
+ * Copyright © 2017 Damien Vergnet
+ * 
+ * This file is part of Minesweeper.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.darmo_creations.minesweeper.solver;
+
+import java.util.Arrays;
+
+import net.darmo_creations.minesweeper.model.ChangeSet;
+import net.darmo_creations.minesweeper.model.Grid;
+import net.darmo_creations.minesweeper.model.IntList;
+import net.darmo_creations.minesweeper.model.Tile;
+
+/**
+ * A deterministic solver that finds cells that are guaranteed to be safe or to contain a mine using
+ * only what the player can see.
+ * <p>
+ * Two rules are applied to the numbered cells of the frontier:
+ * <ul>
+ * <li>single point: if a number is already satisfied by the known mines around it, all its other
+ * hidden neighbors are safe; if it needs as many mines as it has unknown neighbors, they are all
+ * mines;</li>
+ * <li>subset: if all the unknown neighbors of a number A are also neighbors of a number B, the
+ * difference between their remaining mines is spread over B's other unknown neighbors.</li>
+ * </ul>
+ * The solver is incremental: it is fed the change sets returned by the grid and only re-examines
+ * the numbers whose neighborhood changed since the last update.
+ *
+ * @author Damien Vergnet
+ */
+public class Solver {
+  private static final byte UNKNOWN = 0;
+  private static final byte SAFE = 1;
+  private static final byte MINE = 2;
+
+  private final int rows, columns;
+  private final int minesNb;
+  /** Tiles as seen by the player. */
+  private final byte[] tiles;
+  /** What is known about each cell: {@code UNKNOWN}, {@code SAFE} or {@code MINE}. */
+  private final byte[] knowledge;
+  /** Numbered cells whose constraint has to be examined again. */
+  private final IntList dirty;
+  private final boolean[] queued;
+  /** Cells known to be safe, some of which may have been revealed since. */
+  private final IntList safeCells;
+  private int knownMines;
+  private int hiddenCells;
+  // Buffers for the unknown neighbors of the two cells being compared.
+  private final int[] unknownA, unknownB;
+
+  /**
+   * Creates a solver for the given grid. The grid is only read to initialize the solver, further
+   * changes have to be passed to {@link #update(ChangeSet)}.
+   * 
+   * @param grid the grid
+   */
+  public Solver(Grid grid) {
+    this.rows = grid.getRows();
+    this.columns = grid.getColumns();
+    this.minesNb = grid.getMinesNumber();
+    this.tiles = new byte[this.rows * this.columns];
+    Arrays.fill(this.tiles, Tile.HIDDEN);
+    this.knowledge = new byte[this.tiles.length];
+    this.dirty = new IntList();
+    this.queued = new boolean[this.tiles.length];
+    this.safeCells = new IntList();
+    this.knownMines = 0;
+    this.hiddenCells = this.tiles.length;
+    this.unknownA = new int[8];
+    this.unknownB = new int[8];
+
+    for (int row = 0; row < this.rows; row++) {
+      for (int col = 0; col < this.columns; col++) {
+        byte tile = grid.getTile(row, col);
+        if (tile != Tile.HIDDEN)
+          setTile(row * this.columns + col, tile);
+      }
+    }
+    solve();
+  }
+
+  /**
+   * Updates the solver with the changes caused by the last move then applies the rules to the
+   * affected cells only.
+   * 
+   * @param changes the changes
+   */
+  public void update(ChangeSet changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      setTile(changes.getRow(i) * this.columns + changes.getColumn(i), changes.getTile(i));
+    }
+    solve();
+  }
+
+  /**
+   * Returns the index ({@code row * columns + col}) of a hidden cell that is guaranteed to be safe
+   * or -1 if there are none.
+   */
+  public int nextSafeCell() {
+    while (!this.safeCells.isEmpty()) {
+      int cell = this.safeCells.get(this.safeCells.size() - 1);
+      if (!Tile.isRevealed(this.tiles[cell]))
+        return cell;
+      this.safeCells.removeLast();
+    }
+    // All mines are known, every other hidden cell is safe.
+    if (this.knownMines == this.minesNb && this.hiddenCells > this.knownMines) {
+      for (int cell = 0; cell < this.tiles.length; cell++) {
+        if (this.knowledge[cell] == UNKNOWN)
+          mark(cell, SAFE);
+      }
+      solve();
+      return nextSafeCell();
+    }
+    return -1;
+  }
+
+  /**
+   * Tells whether the given cell is guaranteed to contain a mine.
+   */
+  public boolean isKnownMine(int row, int col) {
+    return this.knowledge[row * this.columns + col] == MINE;
+  }
+
+  /**
+   * Tells whether the given cell is guaranteed to be safe.
+   */
+  public boolean isKnownSafe(int row, int col) {
+    return this.knowledge[row * this.columns + col] == SAFE;
+  }
+
+  /**
+   * Returns the number of mines found so far.
+   */
+  public int getKnownMinesNumber() {
+    return this.knownMines;
+  }
+
+  /**
+   * Tells whether all the safe cells have been revealed.
+   */
+  public boolean isSolved() {
+    return this.hiddenCells == this.minesNb;
+  }
+
+  private void setTile(int cell, byte tile) {
+    boolean wasRevealed = Tile.isRevealed(this.tiles[cell]);
+
+    this.tiles[cell] = tile;
+    if (Tile.isRevealed(tile) && !wasRevealed) {
+      this.hiddenCells--;
+      if (this.knowledge[cell] == UNKNOWN)
+        this.knowledge[cell] = SAFE;
+      markDirty(cell);
+      markNeighborsDirty(cell);
+    }
+  }
+
+  /**
+   * Applies the rules to all the dirty cells until no new deduction can be made.
+   */
+  private void solve() {
+    while (!this.dirty.isEmpty()) {
+      int cell = this.dirty.removeLast();
+      this.queued[cell] = false;
+
+      int unknownNb = unknownNeighbors(cell, this.unknownA);
+      if (unknownNb == 0)
+        continue;
+      int remaining = remainingMines(cell);
+
+      if (remaining == 0) {
+        markAll(this.unknownA, unknownNb, SAFE);
+      }
+      else if (remaining == unknownNb) {
+        markAll(this.unknownA, unknownNb, MINE);
+      }
+      else {
+        applySubsetRule(cell, unknownNb, remaining);
+      }
+    }
+  }
+
+  /**
+   * Compares the given cell with all the numbers that may share unknown neighbors with it, i.e. the
+   * ones at most 2 rows and columns away.
+   */
+  private void applySubsetRule(int cell, int unknownNb, int remaining) {
+    int row = cell / this.columns, col = cell % this.columns;
+
+    for (int r = Math.max(row - 2, 0); r <= Math.min(row + 2, this.rows - 1); r++) {
+      for (int c = Math.max(col - 2, 0); c <= Math.min(col + 2, this.columns - 1); c++) {
+        int other = r * this.columns + c;
+        if (other == cell || !Tile.isRevealed(this.tiles[other]))
+          continue;
+
+        int otherUnknownNb = unknownNeighbors(other, this.unknownB);
+        if (otherUnknownNb == 0)
+          continue;
+        int otherRemaining = remainingMines(other);
+
+        if (otherUnknownNb > unknownNb && allAdjacent(this.unknownA, unknownNb, other)) {
+          // other's extra unknown neighbors contain exactly (otherRemaining - remaining) mines.
+          if (applyDifference(this.unknownB, otherUnknownNb, cell, otherRemaining - remaining, otherUnknownNb - unknownNb))
+            return;
+        }
+        else if (unknownNb > otherUnknownNb && allAdjacent(this.unknownB, otherUnknownNb, cell)) {
+          if (applyDifference(this.unknownA, unknownNb, other, remaining - otherRemaining, unknownNb - otherUnknownNb))
+            return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the subset rule to the cells of the superset that are not adjacent to the subset's
+   * center.
+   * 
+   * @param superset the unknown neighbors of the larger constraint
+   * @param size the number of cells in superset
+   * @param subsetCenter the center of the smaller constraint
+   * @param mines the number of mines in the difference
+   * @param differenceSize the number of cells in the difference
+   * @return true if a deduction was made
+   */
+  private boolean applyDifference(int[] superset, int size, int subsetCenter, int mines, int differenceSize) {
+    byte value;
+
+    if (mines == 0)
+      value = SAFE;
+    else if (mines == differenceSize)
+      value = MINE;
+    else
+      return false;
+
+    int centerRow = subsetCenter / this.columns, centerCol = subsetCenter % this.columns;
+    for (int i = 0; i < size; i++) {
+      int u = superset[i];
+      if (Math.abs(u / this.columns - centerRow) > 1 || Math.abs(u % this.columns - centerCol) > 1)
+        mark(u, value);
+    }
+    return true;
+  }
+
+  /**
+   * Tells whether all the given cells are adjacent to the given center cell.
+   */
+  private boolean allAdjacent(int[] cells, int size, int center) {
+    int centerRow = center / this.columns, centerCol = center % this.columns;
+
+    for (int i = 0; i < size; i++) {
+      if (Math.abs(cells[i] / this.columns - centerRow) > 1 || Math.abs(cells[i] % this.columns - centerCol) > 1)
+        return false;
+    }
+    return true;
+  }
+
+  private void markAll(int[] cells, int size, byte value) {
+    for (int i = 0; i < size; i++)
+      mark(cells[i], value);
+  }
+
+  /**
+   * Records a deduction and marks the numbers around the cell as dirty.
+   */
+  private void mark(int cell, byte value) {
+    if (this.knowledge[cell] != UNKNOWN)
+      return;
+
+    this.knowledge[cell] = value;
+    if (value == MINE)
+      this.knownMines++;
+    else
+      this.safeCells.add(cell);
+    markNeighborsDirty(cell);
+  }
+
+  /**
+   * Puts the unknown hidden neighbors of the given cell into the given buffer.
+   * 
+   * @return the number of unknown neighbors
+   */
+  private int unknownNeighbors(int cell, int[] buffer) {
+    int row = cell / this.columns, col = cell % this.columns;
+    int n = 0;
+
+    for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, this.rows - 1); r++) {
+      for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, this.columns - 1); c++) {
+        int neighbor = r * this.columns + c;
+        if (this.knowledge[neighbor] == UNKNOWN)
+          buffer[n++] = neighbor;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Returns the number of mines around the given numbered cell that have not been found yet.
+   */
+  private int remainingMines(int cell) {
+    int row = cell / this.columns, col = cell % this.columns;
+    int mines = this.tiles[cell];
+
+    for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, this.rows - 1); r++) {
+      for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, this.columns - 1); c++) {
+        if (this.knowledge[r * this.columns + c] == MINE)
+          mines--;
+      }
+    }
+    return mines;
+  }
+
+  private void markDirty(int cell) {
+    if (Tile.isRevealed(this.tiles[cell]) && !this.queued[cell]) {
+      this.queued[cell] = true;
+      this.dirty.add(cell);
+    }
+  }
+
+  private void markNeighborsDirty(int cell) {
+    int row = cell / this.columns, col = cell % this.columns;
+
+    for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, this.rows - 1); r++) {
+      for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, this.columns - 1); c++) {
+        markDirty(r * this.columns + c);
+      }
+    }
+  }
+}